@@ -0,0 +1,30 @@
+LOCAL_PATH:= $(call my-dir)
+
+# Host-side benchmarks of the gesture pipeline. The app sources are built against the
+# minimal framework stand-ins under stubs/ and a fake libjni_NXActions, run with:
+#   java -Djava.library.path=$ANDROID_HOST_OUT/lib64 \
+#       -jar $ANDROID_HOST_OUT/framework/NXActionsBenchmark.jar [name ...]
+# The IR vote stress check runs the same way with
+#   -cp NXActionsBenchmark.jar com.cyanogenmod.settings.device.IrVoteStress
+
+include $(CLEAR_VARS)
+
+LOCAL_MODULE_TAGS := optional
+
+LOCAL_SRC_FILES := \
+    $(call all-java-files-under, src) \
+    $(call all-java-files-under, stubs) \
+    $(filter-out %/TouchscreenGestureSettings.java %/ServiceWrapper.java \
+        %/BootCompletedReceiver.java, $(call all-java-files-under, ../src))
+
+LOCAL_JAR_MANIFEST := manifest.txt
+LOCAL_MODULE := NXActionsBenchmark
+
+include $(BUILD_HOST_JAVA_LIBRARY)
+
+include $(CLEAR_VARS)
+LOCAL_SRC_FILES := jni/fake_jni_NXActions.c
+LOCAL_MODULE_TAGS := optional
+LOCAL_MODULE := libjni_NXActions
+LOCAL_C_INCLUDES := $(JNI_H_INCLUDE)
+include $(BUILD_HOST_SHARED_LIBRARY)
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/*
+ * Host stand-in for libjni_NXActions. Instead of talking to /dev/stm401 it keeps the
+ * last values written, counts the writes and notices writes that overlap, which the
+ * real driver would see as interleaved ioctls.
+ */
+
+#include <jni.h>
+#include <stdbool.h>
+
+#define UNUSED __attribute__((__unused__))
+
+#define IR_CONFIG_SIZE                 0xD4
+#define IR_CONFIG_TUNING_NUMBER        1
+#define FAKE_TUNING_NUMBER             6
+
+static volatile int ir_disabled = 1;
+static volatile int ir_wake_config;
+static volatile long write_count;
+static volatile long overlap_count;
+static volatile int writers;
+static unsigned char ir_config[IR_CONFIG_SIZE] = {
+    [IR_CONFIG_TUNING_NUMBER] = FAKE_TUNING_NUMBER,
+};
+
+static void begin_write(void)
+{
+    if (__sync_add_and_fetch(&writers, 1) > 1) {
+        __sync_add_and_fetch(&overlap_count, 1);
+    }
+    __sync_add_and_fetch(&write_count, 1);
+}
+
+static void end_write(void)
+{
+    __sync_sub_and_fetch(&writers, 1);
+}
+
+JNIEXPORT jboolean JNICALL Java_com_cyanogenmod_settings_device_IrGestureManager_nativeSetIrConfig(
+     UNUSED JNIEnv *env, UNUSED jclass thiz, jboolean disabled, jint wakeConfig)
+{
+    begin_write();
+    ir_disabled = disabled == JNI_TRUE;
+    ir_wake_config = wakeConfig;
+    end_write();
+    return JNI_TRUE;
+}
+
+JNIEXPORT jobject JNICALL
+Java_com_cyanogenmod_settings_device_IrGestureManager_nativeGetIrConfigBuffer(
+     JNIEnv *env, UNUSED jclass thiz)
+{
+    return (*env)->NewDirectByteBuffer(env, ir_config, sizeof(ir_config));
+}
+
+/* Device opens, ioctls, skipped writes, ioctl failures */
+JNIEXPORT void JNICALL Java_com_cyanogenmod_settings_device_IrGestureManager_nativeGetIoStats(
+     JNIEnv *env, UNUSED jclass thiz, jintArray out)
+{
+    jint values[4] = { 0, (jint)write_count, 0, 0 };
+
+    (*env)->SetIntArrayRegion(env, out, 0, 4, values);
+}
+
+JNIEXPORT jboolean JNICALL Java_com_cyanogenmod_settings_device_FakeStm401_nativeIsIrDisabled(
+     UNUSED JNIEnv *env, UNUSED jclass clazz)
+{
+    return ir_disabled ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT jint JNICALL Java_com_cyanogenmod_settings_device_FakeStm401_nativeGetIrWakeConfig(
+     UNUSED JNIEnv *env, UNUSED jclass clazz)
+{
+    return ir_wake_config;
+}
+
+JNIEXPORT jlong JNICALL Java_com_cyanogenmod_settings_device_FakeStm401_nativeGetWriteCount(
+     UNUSED JNIEnv *env, UNUSED jclass clazz)
+{
+    return write_count;
+}
+
+JNIEXPORT jlong JNICALL Java_com_cyanogenmod_settings_device_FakeStm401_nativeGetOverlapCount(
+     UNUSED JNIEnv *env, UNUSED jclass clazz)
+{
+    return overlap_count;
+}
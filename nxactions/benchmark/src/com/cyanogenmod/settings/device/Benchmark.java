@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+/**
+ * One measured operation. run() is called once per iteration, after setUp() and before
+ * tearDown(), always from the same thread.
+ */
+public abstract class Benchmark {
+    private final String mName;
+
+    protected Benchmark(String name) {
+        mName = name;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Runs iteration i and returns its latency in ns. Most benchmarks return the time
+     * the call took, asynchronous ones the time until the effect was observed.
+     */
+    public abstract long run(int i) throws Exception;
+
+    public void tearDown() throws Exception {
+    }
+
+    // Lets a benchmark whose iterations take milliseconds run fewer of them
+    public int getIterations(int requested) {
+        return requested;
+    }
+}
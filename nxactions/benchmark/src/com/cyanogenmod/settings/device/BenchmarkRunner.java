@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the gesture pipeline benchmarks and prints, for each, throughput, bytes
+ * allocated per operation and p50/p99/max latency. Arguments select benchmarks by
+ * name prefix, -Dbenchmark.warmup and -Dbenchmark.iterations set the iteration counts.
+ */
+public class BenchmarkRunner {
+    private static final int WARMUP_ITERATIONS =
+            Integer.getInteger("benchmark.warmup", 2000);
+    private static final int MEASURED_ITERATIONS =
+            Integer.getInteger("benchmark.iterations", 20000);
+
+    public static List<Benchmark> allBenchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        benchmarks.addAll(SensorEventBenchmark.all());
+        benchmarks.add(new IrGestureManagerBenchmark(false));
+        benchmarks.add(new IrGestureManagerBenchmark(true));
+        benchmarks.add(new IrGestureContentionBenchmark());
+        benchmarks.add(new DozePulseBenchmark());
+        benchmarks.add(new ScreenStateBenchmark());
+        benchmarks.add(new CameraLaunchBenchmark(false));
+        benchmarks.add(new CameraLaunchBenchmark(true));
+        return benchmarks;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int failures = 0;
+        for (Benchmark benchmark : allBenchmarks()) {
+            if (!isSelected(benchmark, args)) {
+                continue;
+            }
+            try {
+                System.out.println(measure(benchmark));
+            } catch (Exception e) {
+                System.out.println(benchmark.getName() + " FAILED: " + e);
+                e.printStackTrace();
+                failures++;
+            }
+        }
+        // The service under test leaves looper threads behind
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static boolean isSelected(Benchmark benchmark, String[] names) {
+        if (names.length == 0) {
+            return true;
+        }
+        for (String name : names) {
+            if (benchmark.getName().startsWith(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String measure(Benchmark benchmark) throws Exception {
+        int warmup = benchmark.getIterations(WARMUP_ITERATIONS);
+        int iterations = benchmark.getIterations(MEASURED_ITERATIONS);
+        benchmark.setUp();
+        try {
+            for (int i = 0; i < warmup; i++) {
+                benchmark.run(i);
+            }
+
+            long[] latencies = new long[iterations];
+            long startBytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                latencies[i] = benchmark.run(warmup + i);
+            }
+            long elapsed = System.nanoTime() - start;
+            long bytes = allocatedBytes() - startBytes;
+
+            Arrays.sort(latencies);
+            return String.format("%-28s %12.0f ops/s %10s B/op  p50 %9d ns  p99 %9d ns"
+                    + "  max %10d ns", benchmark.getName(),
+                    iterations * 1e9 / elapsed,
+                    startBytes < 0 ? "n/a" : String.format("%.1f",
+                            (double) bytes / iterations),
+                    percentile(latencies, 50), percentile(latencies, 99),
+                    latencies[latencies.length - 1]);
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(sorted.length * percentile / 100.0) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    // Only counts the benchmark thread, work handed to other threads is not included
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) bean)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import android.hardware.SensorEvent;
+import android.os.SystemClock;
+import android.view.Display;
+
+/**
+ * Twist to camera launch, with the camera process either killed before every twist or
+ * started by the pick up that came before it.
+ */
+public class CameraLaunchBenchmark extends Benchmark {
+    private static final int SENSOR_TYPE_MMI_CAMERA_ACTIVATION = 65540;
+    private static final int SENSOR_TYPE_MMI_FLAT_UP = 65537;
+
+    // Every cold iteration waits out a process start
+    private static final int MAX_ITERATIONS = 200;
+
+    private static final long TIMEOUT_MS = 1000;
+    private static final long GESTURE_INTERVAL_MS = 2500;
+
+    private final boolean mPickedUp;
+
+    private FakeContext mContext;
+    private CMActionsService mService;
+    private SensorEvent mTwist;
+
+    public CameraLaunchBenchmark(boolean pickedUp) {
+        super(pickedUp ? "camera_launch/picked_up" : "camera_launch/cold");
+        mPickedUp = pickedUp;
+    }
+
+    @Override
+    public int getIterations(int requested) {
+        return Math.min(requested, MAX_ITERATIONS);
+    }
+
+    @Override
+    public void setUp() throws InterruptedException {
+        mContext = new FakeContext();
+        mService = new CMActionsService(mContext);
+        FakeSensorManager sensorManager = mContext.getSensorManager();
+
+        if (mPickedUp) {
+            mContext.getDisplayManager().setDisplayState(Display.STATE_OFF);
+            awaitRegistered(SENSOR_TYPE_MMI_FLAT_UP);
+            sensorManager.inject(sensorManager.createEvent(SENSOR_TYPE_MMI_FLAT_UP,
+                    new float[] { 1 }));
+            sensorManager.inject(sensorManager.createEvent(SENSOR_TYPE_MMI_FLAT_UP,
+                    new float[] { 0 }));
+            if (!mContext.getActivityManager().awaitRunning(TIMEOUT_MS)) {
+                throw new IllegalStateException("The pick up did not start the camera");
+            }
+            mContext.getDisplayManager().setDisplayState(Display.STATE_ON);
+        }
+        awaitRegistered(SENSOR_TYPE_MMI_CAMERA_ACTIVATION);
+
+        mTwist = sensorManager.createEvent(SENSOR_TYPE_MMI_CAMERA_ACTIVATION,
+                new float[] { 1 });
+    }
+
+    private void awaitRegistered(int sensorType) throws InterruptedException {
+        if (!mContext.getSensorManager().awaitRegistered(new int[] { sensorType }, true,
+                TIMEOUT_MS)) {
+            throw new IllegalStateException("Sensor " + sensorType + " was never armed");
+        }
+    }
+
+    @Override
+    public long run(int i) throws Exception {
+        if (!mPickedUp) {
+            mContext.getActivityManager().killProcess();
+        }
+
+        // Gestures come seconds apart, past every channel's rate limit
+        SystemClock.simulateSuspend(GESTURE_INTERVAL_MS);
+        long activityStarts = mContext.getActivityStartCount();
+        long start = System.nanoTime();
+        mContext.getSensorManager().inject(mTwist);
+        long started = mContext.awaitActivityStart(activityStarts, TIMEOUT_MS);
+        if (started < 0) {
+            throw new IllegalStateException("The twist did not launch the camera");
+        }
+        return started - start;
+    }
+}
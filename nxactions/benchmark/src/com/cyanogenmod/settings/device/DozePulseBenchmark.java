@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+/**
+ * The doze pulse channel's coalescing and rate limiting, checked on every pick-up, stow
+ * and IR event before anything is queued.
+ */
+public class DozePulseBenchmark extends Benchmark {
+    // Further apart than the channel's coalescing window
+    private static final long EVENT_INTERVAL_NS = 500 * 1000000L;
+
+    private ActionDispatcher.Channel mChannel;
+
+    public DozePulseBenchmark() {
+        super("doze_pulse/dispatch");
+    }
+
+    @Override
+    public void setUp() {
+        FakeContext context = new FakeContext();
+        ActionDispatcher dispatcher = new ActionDispatcher(new GestureLatencyTracker(),
+                new WakeLockPool(context));
+        mChannel = dispatcher.createChannel("doze", new DozePulseAction(context),
+                ActionDispatcher.LANE_BEST_EFFORT, 250, 1,
+                DozePulseAction.DELAY_BETWEEN_DOZES_IN_MS);
+    }
+
+    @Override
+    public long run(int i) {
+        long start = System.nanoTime();
+        mChannel.dispatch(GestureLatencyTracker.GESTURE_FLAT_UP, i * EVENT_INTERVAL_NS, start);
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+/**
+ * Stands in for the activity manager's process handling of the camera package: the first
+ * component started while its process is not running pays for a cold start, callers
+ * arriving during that start wait for the same one.
+ */
+public class FakeActivityManager {
+    // Roughly a zygote fork plus the camera app's Application.onCreate()
+    public static final long COLD_START_MS = 20;
+
+    private boolean mRunning;
+    private boolean mStarting;
+    private long mColdStarts;
+
+    public void startProcess() {
+        synchronized (this) {
+            while (mStarting) {
+                waitUninterruptibly();
+            }
+            if (mRunning) {
+                return;
+            }
+            mStarting = true;
+        }
+
+        try {
+            Thread.sleep(COLD_START_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                mStarting = false;
+                mRunning = true;
+                mColdStarts++;
+                notifyAll();
+            }
+        }
+    }
+
+    public synchronized void killProcess() {
+        while (mStarting) {
+            waitUninterruptibly();
+        }
+        mRunning = false;
+    }
+
+    public synchronized long getColdStartCount() {
+        return mColdStarts;
+    }
+
+    // Returns whether the process was running within timeoutMs
+    public synchronized boolean awaitRunning(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMs * 1000000;
+        while (!mRunning) {
+            long remainingMs = (deadline - System.nanoTime()) / 1000000;
+            if (remainingMs <= 0) {
+                return false;
+            }
+            wait(remainingMs);
+        }
+        return true;
+    }
+
+    private void waitUninterruptibly() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.app.KeyguardManager;
+import android.content.BroadcastReceiver;
+import android.content.ContentProviderClient;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.ServiceConnection;
+import android.content.SharedPreferences;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ProviderInfo;
+import android.content.pm.ResolveInfo;
+import android.hardware.TorchManager;
+import android.os.PowerManager;
+import android.os.Vibrator;
+import android.telecom.TelecomManager;
+import android.telephony.TelephonyManager;
+
+/**
+ * Context backing the benchmarks. It stands in for the activity manager too: each
+ * startActivity() is timestamped so a benchmark can measure gesture to launch, and
+ * starting the camera activity or its provider goes through FakeActivityManager.
+ */
+public class FakeContext extends Context {
+    public static final String CAMERA_PACKAGE = "org.cyanogenmod.snap";
+    public static final String CAMERA_ACTIVITY = "com.android.camera.CameraLauncher";
+    public static final String CAMERA_AUTHORITY = "org.cyanogenmod.snap.provider";
+
+    private final FakeSensorManager mSensorManager = new FakeSensorManager();
+    private final FakeDisplayManager mDisplayManager = new FakeDisplayManager();
+    private final Map<String, Object> mServices = new HashMap<String, Object>();
+    private final Map<String, FakeSharedPreferences> mPreferences =
+            new HashMap<String, FakeSharedPreferences>();
+    private final List<BroadcastReceiver> mReceivers = new ArrayList<BroadcastReceiver>();
+    private final PackageManager mPackageManager = new FakePackageManager();
+    private final FakeActivityManager mActivityManager = new FakeActivityManager();
+    private final ContentResolver mContentResolver = new FakeContentResolver();
+    private final File mFilesDir;
+
+    private long mActivityStarts;
+    private long mLastActivityStartNanos;
+    private long mBroadcasts;
+
+    public FakeContext() {
+        mFilesDir = new File(System.getProperty("java.io.tmpdir"), "nxactions-benchmark");
+        mFilesDir.mkdirs();
+
+        mServices.put(Context.SENSOR_SERVICE, mSensorManager);
+        mServices.put(Context.DISPLAY_SERVICE, mDisplayManager);
+        mServices.put(Context.POWER_SERVICE, new PowerManager());
+        mServices.put(Context.KEYGUARD_SERVICE, new KeyguardManager());
+        mServices.put(Context.VIBRATOR_SERVICE, new Vibrator());
+        mServices.put(Context.TORCH_SERVICE, new TorchManager());
+        mServices.put(Context.TELECOM_SERVICE, new TelecomManager());
+        mServices.put(Context.TELEPHONY_SERVICE, new TelephonyManager());
+    }
+
+    public FakeSensorManager getSensorManager() {
+        return mSensorManager;
+    }
+
+    public FakeDisplayManager getDisplayManager() {
+        return mDisplayManager;
+    }
+
+    public FakeActivityManager getActivityManager() {
+        return mActivityManager;
+    }
+
+    @Override
+    public Object getSystemService(String name) {
+        return mServices.get(name);
+    }
+
+    @Override
+    public String getPackageName() {
+        return "com.cyanogenmod.settings.device";
+    }
+
+    @Override
+    public PackageManager getPackageManager() {
+        return mPackageManager;
+    }
+
+    @Override
+    public ContentResolver getContentResolver() {
+        return mContentResolver;
+    }
+
+    @Override
+    public File getFilesDir() {
+        return mFilesDir;
+    }
+
+    @Override
+    public FileOutputStream openFileOutput(String name, int mode)
+            throws FileNotFoundException {
+        return new FileOutputStream(new File(mFilesDir, name));
+    }
+
+    @Override
+    public synchronized SharedPreferences getSharedPreferences(String name, int mode) {
+        FakeSharedPreferences preferences = mPreferences.get(name);
+        if (preferences == null) {
+            preferences = new FakeSharedPreferences();
+            mPreferences.put(name, preferences);
+        }
+        return preferences;
+    }
+
+    @Override
+    public synchronized Intent registerReceiver(BroadcastReceiver receiver,
+            IntentFilter filter) {
+        mReceivers.add(receiver);
+        return null;
+    }
+
+    @Override
+    public synchronized void unregisterReceiver(BroadcastReceiver receiver) {
+        mReceivers.remove(receiver);
+    }
+
+    @Override
+    public synchronized void sendBroadcast(Intent intent) {
+        mBroadcasts++;
+    }
+
+    public synchronized long getBroadcastCount() {
+        return mBroadcasts;
+    }
+
+    @Override
+    public void startActivity(Intent intent) {
+        // Only the camera is ever launched
+        mActivityManager.startProcess();
+        synchronized (this) {
+            mLastActivityStartNanos = System.nanoTime();
+            mActivityStarts++;
+            notifyAll();
+        }
+    }
+
+    // The camera package has a provider, so services are never bound
+    @Override
+    public boolean bindService(Intent service, ServiceConnection conn, int flags) {
+        return false;
+    }
+
+    @Override
+    public void unbindService(ServiceConnection conn) {
+    }
+
+    public synchronized long getActivityStartCount() {
+        return mActivityStarts;
+    }
+
+    /**
+     * Waits until more than count activities have been started and returns the time of
+     * the last start, or -1 after timeoutMs.
+     */
+    public synchronized long awaitActivityStart(long count, long timeoutMs)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMs * 1000000;
+        while (mActivityStarts <= count) {
+            long remainingMs = (deadline - System.nanoTime()) / 1000000;
+            if (remainingMs <= 0) {
+                return -1;
+            }
+            wait(remainingMs);
+        }
+        return mLastActivityStartNanos;
+    }
+
+    private class FakeContentResolver extends ContentResolver {
+        @Override
+        public ContentProviderClient acquireUnstableContentProviderClient(String name) {
+            if (!CAMERA_AUTHORITY.equals(name)) {
+                return null;
+            }
+            mActivityManager.startProcess();
+            return new ContentProviderClient();
+        }
+    }
+
+    // Resolves the camera intents to a single camera app, as on a stock build
+    private static class FakePackageManager extends PackageManager {
+        @Override
+        public PackageInfo getPackageInfo(String packageName, int flags)
+                throws NameNotFoundException {
+            if (!CAMERA_PACKAGE.equals(packageName)) {
+                throw new NameNotFoundException(packageName);
+            }
+            ProviderInfo provider = new ProviderInfo();
+            provider.packageName = CAMERA_PACKAGE;
+            provider.name = "com.android.camera.provider.CameraProvider";
+            provider.authority = CAMERA_AUTHORITY;
+
+            PackageInfo info = new PackageInfo();
+            info.packageName = CAMERA_PACKAGE;
+            info.providers = new ProviderInfo[] { provider };
+            return info;
+        }
+
+        @Override
+        public ResolveInfo resolveActivity(Intent intent, int flags) {
+            return cameraResolveInfo();
+        }
+
+        @Override
+        public List<ResolveInfo> queryIntentActivities(Intent intent, int flags) {
+            List<ResolveInfo> activities = new ArrayList<ResolveInfo>();
+            activities.add(cameraResolveInfo());
+            return activities;
+        }
+
+        private static ResolveInfo cameraResolveInfo() {
+            ResolveInfo resolveInfo = new ResolveInfo();
+            resolveInfo.activityInfo = new ActivityInfo();
+            resolveInfo.activityInfo.packageName = CAMERA_PACKAGE;
+            resolveInfo.activityInfo.name = CAMERA_ACTIVITY;
+            resolveInfo.activityInfo.applicationInfo = new ApplicationInfo();
+            resolveInfo.activityInfo.applicationInfo.packageName = CAMERA_PACKAGE;
+            return resolveInfo;
+        }
+    }
+}
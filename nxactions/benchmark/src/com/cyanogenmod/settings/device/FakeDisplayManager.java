@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.hardware.display.DisplayManager;
+import android.os.Handler;
+import android.view.Display;
+
+/**
+ * Display manager with a default display whose power state the benchmarks set. Listeners
+ * are called on their handler, as in the framework.
+ */
+public class FakeDisplayManager extends DisplayManager {
+    private final Map<DisplayListener, Handler> mListeners =
+            new HashMap<DisplayListener, Handler>();
+
+    private Display mDisplay = new Display(Display.DEFAULT_DISPLAY, Display.STATE_ON);
+
+    @Override
+    public synchronized Display getDisplay(int displayId) {
+        return displayId == Display.DEFAULT_DISPLAY ? mDisplay : null;
+    }
+
+    @Override
+    public synchronized void registerDisplayListener(DisplayListener listener,
+            Handler handler) {
+        mListeners.put(listener, handler);
+    }
+
+    @Override
+    public synchronized void unregisterDisplayListener(DisplayListener listener) {
+        mListeners.remove(listener);
+    }
+
+    public synchronized void setDisplayState(int state) {
+        mDisplay = new Display(Display.DEFAULT_DISPLAY, state);
+        for (Map.Entry<DisplayListener, Handler> entry : mListeners.entrySet()) {
+            final DisplayListener listener = entry.getKey();
+            entry.getValue().post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onDisplayChanged(Display.DEFAULT_DISPLAY);
+                }
+            });
+        }
+    }
+}
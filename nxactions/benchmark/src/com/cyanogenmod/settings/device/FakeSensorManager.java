@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Offers every MMI sensor type and lets a benchmark inject events straight into the
+ * registered listener, on the calling thread.
+ */
+public class FakeSensorManager extends SensorManager {
+    private static final int FIFO_MAX_EVENT_COUNT = 300;
+
+    private final Map<Integer, Sensor> mSensors = new HashMap<Integer, Sensor>();
+    private final Map<Sensor, SensorEventListener> mListeners =
+            new HashMap<Sensor, SensorEventListener>();
+    private int mRegisterCount;
+
+    @Override
+    public synchronized List<Sensor> getSensorList(int type) {
+        return new ArrayList<Sensor>(mSensors.values());
+    }
+
+    @Override
+    public synchronized Sensor getDefaultSensor(int type, boolean wakeUp) {
+        Sensor sensor = mSensors.get(type);
+        if (sensor == null) {
+            sensor = new Sensor(type, "fake-" + type, FIFO_MAX_EVENT_COUNT, wakeUp);
+            mSensors.put(type, sensor);
+        }
+        return sensor;
+    }
+
+    @Override
+    public synchronized boolean registerListener(SensorEventListener listener, Sensor sensor,
+            int samplingPeriodUs, int maxReportLatencyUs, Handler handler) {
+        mListeners.put(sensor, listener);
+        mRegisterCount++;
+        notifyAll();
+        return true;
+    }
+
+    @Override
+    public synchronized void unregisterListener(SensorEventListener listener) {
+        mListeners.values().remove(listener);
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void unregisterListener(SensorEventListener listener, Sensor sensor) {
+        if (mListeners.get(sensor) == listener) {
+            mListeners.remove(sensor);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Screen transitions are applied on a dispatcher thread. Waits until each sensor of
+     * types has a listener, or none if registered is false, and returns false after
+     * timeoutMs.
+     */
+    public synchronized boolean awaitRegistered(int[] types, boolean registered,
+            long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMs * 1000000;
+        while (!isRegistered(types, registered)) {
+            long remainingMs = (deadline - System.nanoTime()) / 1000000;
+            if (remainingMs <= 0) {
+                return false;
+            }
+            wait(remainingMs);
+        }
+        return true;
+    }
+
+    private boolean isRegistered(int[] types, boolean registered) {
+        for (int type : types) {
+            if (mListeners.containsKey(getDefaultSensor(type, true)) != registered) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized int getRegisterCount() {
+        return mRegisterCount;
+    }
+
+    public SensorEvent createEvent(int type, float... values) {
+        SensorEvent event = new SensorEvent(values.length);
+        System.arraycopy(values, 0, event.values, 0, values.length);
+        event.sensor = getDefaultSensor(type, true);
+        return event;
+    }
+
+    // Returns false if nothing is registered for the event's sensor
+    public boolean inject(SensorEvent event) {
+        SensorEventListener listener;
+        synchronized (this) {
+            listener = mListeners.get(event.sensor);
+        }
+        if (listener == null) {
+            return false;
+        }
+        event.timestamp = SystemClock.elapsedRealtimeNanos();
+        listener.onSensorChanged(event);
+        return true;
+    }
+}
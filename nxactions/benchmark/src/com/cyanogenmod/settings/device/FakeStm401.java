@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+/**
+ * Reads back what IrGestureManager wrote to the fake libjni_NXActions.
+ */
+public class FakeStm401 {
+    // IrGestureManager only loads the library once it first applies a mask
+    static {
+        System.loadLibrary("jni_NXActions");
+    }
+
+    private FakeStm401() {
+    }
+
+    public static boolean isIrDisabled() {
+        return nativeIsIrDisabled();
+    }
+
+    public static int getIrWakeConfig() {
+        return nativeGetIrWakeConfig();
+    }
+
+    // Total number of native writes so far
+    public static long getWriteCount() {
+        return nativeGetWriteCount();
+    }
+
+    // Writes that started while another one was still in progress
+    public static long getOverlapCount() {
+        return nativeGetOverlapCount();
+    }
+
+    private static native boolean nativeIsIrDisabled();
+    private static native int nativeGetIrWakeConfig();
+    private static native long nativeGetWriteCount();
+    private static native long nativeGetOverlapCount();
+}
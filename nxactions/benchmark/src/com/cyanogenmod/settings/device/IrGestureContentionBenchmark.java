@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+/**
+ * IrGestureManager.updateState() while other threads keep voting for gestures of their
+ * own, so the measured voter regularly finds an apply in progress.
+ */
+public class IrGestureContentionBenchmark extends Benchmark {
+    private static final int VOTERS = 3;
+    private static final int FLAGS = 1 << IrGestureManager.IR_GESTURE_APPROACH;
+
+    private IrGestureManager mIrGestureManager;
+    private Thread[] mVoters;
+    private volatile boolean mStopped;
+
+    public IrGestureContentionBenchmark() {
+        super("ir_gesture_manager/contended");
+    }
+
+    @Override
+    public void setUp() {
+        mIrGestureManager = new IrGestureManager(new FakeContext());
+        mStopped = false;
+        mVoters = new Thread[VOTERS];
+        for (int t = 0; t < VOTERS; t++) {
+            final int flags = 1 << (IrGestureManager.IR_GESTURE_HOVER + t);
+            mVoters[t] = new Thread("IrVoter-" + t) {
+                @Override
+                public void run() {
+                    while (!mStopped) {
+                        mIrGestureManager.updateState(0, flags);
+                        mIrGestureManager.updateState(flags, 0);
+                    }
+                }
+            };
+            mVoters[t].start();
+        }
+    }
+
+    @Override
+    public long run(int i) {
+        long start = System.nanoTime();
+        if ((i & 1) == 0) {
+            mIrGestureManager.updateState(0, FLAGS);
+        } else {
+            mIrGestureManager.updateState(FLAGS, 0);
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Override
+    public void tearDown() throws InterruptedException {
+        mStopped = true;
+        for (Thread voter : mVoters) {
+            voter.join();
+        }
+    }
+}
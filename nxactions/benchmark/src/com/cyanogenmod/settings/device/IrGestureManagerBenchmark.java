@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+/**
+ * Moves one vote through IrGestureManager per iteration. With toggling, every call
+ * changes the applied mask and reaches the (fake) driver; otherwise only the vote
+ * bookkeeping runs.
+ */
+public class IrGestureManagerBenchmark extends Benchmark {
+    private static final int STEADY_FLAGS = 1 << IrGestureManager.IR_GESTURE_APPROACH;
+    private static final int OTHER_FLAGS = 1 << IrGestureManager.IR_GESTURE_SWIPE;
+
+    private final boolean mToggling;
+
+    private IrGestureManager mIrGestureManager;
+    private long mStartWrites;
+
+    public IrGestureManagerBenchmark(boolean toggling) {
+        super(toggling ? "ir_gesture_manager/toggling" : "ir_gesture_manager/steady");
+        mToggling = toggling;
+    }
+
+    @Override
+    public void setUp() {
+        mIrGestureManager = new IrGestureManager(new FakeContext());
+        if (!mToggling) {
+            // A second voter holds both gestures so moving the first one changes nothing
+            mIrGestureManager.updateState(0, STEADY_FLAGS | OTHER_FLAGS);
+        }
+        mIrGestureManager.updateState(0, STEADY_FLAGS);
+        mStartWrites = FakeStm401.getWriteCount();
+    }
+
+    @Override
+    public long run(int i) {
+        int movedFlags = mToggling ? 0 : OTHER_FLAGS;
+        int oldFlags = (i & 1) == 0 ? STEADY_FLAGS : movedFlags;
+        int flags = (i & 1) == 0 ? movedFlags : STEADY_FLAGS;
+
+        long start = System.nanoTime();
+        mIrGestureManager.updateState(oldFlags, flags);
+        return System.nanoTime() - start;
+    }
+
+    @Override
+    public void tearDown() {
+        long writes = FakeStm401.getWriteCount() - mStartWrites;
+        if (!mToggling && writes != 0) {
+            throw new IllegalStateException("Steady votes wrote to the driver " + writes
+                    + " times");
+        }
+    }
+}
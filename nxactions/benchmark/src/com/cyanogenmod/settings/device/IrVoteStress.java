@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Hammers IrGestureManager.updateState() from several threads at once, then checks that
+ * the fake driver ended up with exactly the mask of the final votes and that no two
+ * native writes overlapped. Exits non-zero on failure.
+ */
+public class IrVoteStress {
+    private static final int THREADS = Integer.getInteger("stress.threads", 8);
+    private static final int ITERATIONS = Integer.getInteger("stress.iterations", 200000);
+    private static final int ROUNDS = Integer.getInteger("stress.rounds", 20);
+
+    public static void main(String[] args) throws Exception {
+        int failures = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            if (!runRound(round)) {
+                failures++;
+            }
+        }
+        System.out.println("ir_vote_stress: " + (ROUNDS - failures) + "/" + ROUNDS
+                + " rounds passed, " + THREADS + " threads x " + ITERATIONS + " votes");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static boolean runRound(final int round) throws InterruptedException {
+        final IrGestureManager irGestureManager = new IrGestureManager(new FakeContext());
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        int expected = 0;
+
+        for (int t = 0; t < THREADS; t++) {
+            final int flagsA = 1 << (1 + t % IrGestureManager.IR_GESTURE_LAST);
+            final int flagsB = 1 << (1 + (t + 3) % IrGestureManager.IR_GESTURE_LAST);
+            // Which threads keep a vote at the end changes from round to round
+            final int finalFlags = ((t + round) & 1) == 0 ? flagsA | flagsB : 0;
+            expected |= finalFlags;
+
+            threads[t] = new Thread("IrVoteStress-" + t) {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    int flags = 0;
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        int next = i % 3 == 0 ? 0 : (i % 3 == 1 ? flagsA : flagsB);
+                        irGestureManager.updateState(flags, next);
+                        flags = next;
+                    }
+                    irGestureManager.updateState(flags, finalFlags);
+                }
+            };
+            threads[t].start();
+        }
+
+        long overlaps = FakeStm401.getOverlapCount();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Every voter has returned, so whoever was applying has pushed the final mask
+        int wakeConfig = FakeStm401.getIrWakeConfig();
+        boolean disabled = FakeStm401.isIrDisabled();
+        overlaps = FakeStm401.getOverlapCount() - overlaps;
+        if (wakeConfig != expected || disabled != (expected == 0) || overlaps != 0) {
+            System.out.println("round " + round + ": expected 0x" + Integer.toHexString(expected)
+                    + " got 0x" + Integer.toHexString(wakeConfig) + " disabled=" + disabled
+                    + " overlapping writes=" + overlaps);
+            return false;
+        }
+        return true;
+    }
+}
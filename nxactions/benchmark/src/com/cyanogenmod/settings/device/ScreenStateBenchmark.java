@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import android.view.Display;
+
+/**
+ * Screen on/off fan-out to every sensor and action, including the re-registrations
+ * and IR votes they trigger, until the pick-up and IR sensors followed the new state.
+ */
+public class ScreenStateBenchmark extends Benchmark {
+    // Armed only while the screen is off
+    private static final int[] SCREEN_OFF_SENSORS = { 65537, 65539, 65541 };
+    private static final long SCREEN_STATE_TIMEOUT_MS = 1000;
+
+    private FakeContext mContext;
+    private CMActionsService mService;
+
+    public ScreenStateBenchmark() {
+        super("screen_state/toggle");
+    }
+
+    @Override
+    public void setUp() {
+        mContext = new FakeContext();
+        mService = new CMActionsService(mContext);
+    }
+
+    @Override
+    public long run(int i) throws InterruptedException {
+        boolean screenOff = (i & 1) == 0;
+        long start = System.nanoTime();
+        if (screenOff) {
+            mContext.getDisplayManager().setDisplayState(Display.STATE_OFF);
+        } else {
+            mContext.getDisplayManager().setDisplayState(Display.STATE_ON);
+        }
+        if (!mContext.getSensorManager().awaitRegistered(SCREEN_OFF_SENSORS, screenOff,
+                SCREEN_STATE_TIMEOUT_MS)) {
+            throw new IllegalStateException("Screen " + (screenOff ? "off" : "on")
+                    + " was not applied");
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Override
+    public void tearDown() {
+        mContext.getDisplayManager().setDisplayState(Display.STATE_ON);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.hardware.SensorEvent;
+import android.os.SystemClock;
+import android.view.Display;
+
+/**
+ * Delivers one sensor event per iteration to a fully built CMActionsService, from the
+ * raw SensorEventListener callback down to the action.
+ */
+public class SensorEventBenchmark extends Benchmark {
+    private static final int SENSOR_TYPE_MMI_CAMERA_ACTIVATION = 65540;
+    private static final int SENSOR_TYPE_MMI_CHOP_CHOP = 65546;
+    private static final int SENSOR_TYPE_MMI_FLAT_UP = 65537;
+    private static final int SENSOR_TYPE_MMI_IR_GESTURE = 65541;
+    private static final int SENSOR_TYPE_MMI_STOW = 65539;
+
+    private static final int IR_GESTURE_APPROACH = 4;
+
+    private static final long ACTIVITY_START_TIMEOUT_MS = 1000;
+    private static final long SCREEN_STATE_TIMEOUT_MS = 1000;
+    private static final long GESTURE_INTERVAL_MS = 2500;
+
+    private final int mSensorType;
+    private final boolean mScreenOn;
+    private final boolean mLaunchesActivity;
+    private final float[][] mValues;
+
+    private FakeContext mContext;
+    private CMActionsService mService;
+    private SensorEvent[] mEvents;
+
+    public static List<Benchmark> all() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        benchmarks.add(new SensorEventBenchmark("sensor_event/camera",
+                SENSOR_TYPE_MMI_CAMERA_ACTIVATION, true, true, new float[] { 1 }));
+        benchmarks.add(new SensorEventBenchmark("sensor_event/flashlight",
+                SENSOR_TYPE_MMI_CHOP_CHOP, true, false, new float[] { 1 }));
+        // Alternating flat and lifted, every other event is a pick-up
+        benchmarks.add(new SensorEventBenchmark("sensor_event/flat_up",
+                SENSOR_TYPE_MMI_FLAT_UP, false, false, new float[] { 1 }, new float[] { 0 }));
+        benchmarks.add(new SensorEventBenchmark("sensor_event/stow",
+                SENSOR_TYPE_MMI_STOW, false, false, new float[] { 1 }, new float[] { 0 }));
+        benchmarks.add(new SensorEventBenchmark("sensor_event/ir_gesture",
+                SENSOR_TYPE_MMI_IR_GESTURE, false, false,
+                new float[] { 0, IR_GESTURE_APPROACH, 0 }));
+        return benchmarks;
+    }
+
+    private SensorEventBenchmark(String name, int sensorType, boolean screenOn,
+            boolean launchesActivity, float[]... values) {
+        super(name);
+        mSensorType = sensorType;
+        mScreenOn = screenOn;
+        mLaunchesActivity = launchesActivity;
+        mValues = values;
+    }
+
+    @Override
+    public void setUp() throws InterruptedException {
+        mContext = new FakeContext();
+        mService = new CMActionsService(mContext);
+        if (!mScreenOn) {
+            mContext.getDisplayManager().setDisplayState(Display.STATE_OFF);
+        }
+        if (!mContext.getSensorManager().awaitRegistered(new int[] { mSensorType }, true,
+                SCREEN_STATE_TIMEOUT_MS)) {
+            throw new IllegalStateException("Sensor " + mSensorType + " was never armed");
+        }
+
+        mEvents = new SensorEvent[mValues.length];
+        for (int i = 0; i < mValues.length; i++) {
+            mEvents[i] = mContext.getSensorManager().createEvent(mSensorType, mValues[i]);
+        }
+    }
+
+    @Override
+    public long run(int i) throws Exception {
+        SensorEvent event = mEvents[i % mEvents.length];
+        // Gestures come seconds apart, past every channel's rate limit
+        SystemClock.simulateSuspend(GESTURE_INTERVAL_MS);
+        long activityStarts = mContext.getActivityStartCount();
+        long start = System.nanoTime();
+        if (!mContext.getSensorManager().inject(event)) {
+            throw new IllegalStateException("Nothing listens to sensor " + mSensorType);
+        }
+        if (!mLaunchesActivity) {
+            return System.nanoTime() - start;
+        }
+
+        long started = mContext.awaitActivityStart(activityStarts, ACTIVITY_START_TIMEOUT_MS);
+        if (started < 0) {
+            throw new IllegalStateException("No activity started for sensor " + mSensorType);
+        }
+        return started - start;
+    }
+
+    @Override
+    public void tearDown() {
+        mContext.getDisplayManager().setDisplayState(Display.STATE_ON);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.content;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+
+import android.content.pm.PackageManager;
+
+public abstract class Context {
+    public static final int MODE_PRIVATE = 0;
+    public static final int MODE_WORLD_READABLE = 1;
+
+    public static final int BIND_AUTO_CREATE = 0x0001;
+
+    public static final String DISPLAY_SERVICE = "display";
+    public static final String KEYGUARD_SERVICE = "keyguard";
+    public static final String POWER_SERVICE = "power";
+    public static final String SENSOR_SERVICE = "sensor";
+    public static final String TELECOM_SERVICE = "telecom";
+    public static final String TELEPHONY_SERVICE = "phone";
+    public static final String TORCH_SERVICE = "torch";
+    public static final String VIBRATOR_SERVICE = "vibrator";
+
+    public abstract Object getSystemService(String name);
+
+    public abstract String getPackageName();
+
+    public abstract PackageManager getPackageManager();
+
+    public abstract ContentResolver getContentResolver();
+
+    public abstract File getFilesDir();
+
+    public abstract FileOutputStream openFileOutput(String name, int mode)
+            throws FileNotFoundException;
+
+    public abstract SharedPreferences getSharedPreferences(String name, int mode);
+
+    public abstract Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter);
+
+    public abstract void unregisterReceiver(BroadcastReceiver receiver);
+
+    public abstract void sendBroadcast(Intent intent);
+
+    public abstract void startActivity(Intent intent);
+
+    public abstract boolean bindService(Intent service, ServiceConnection conn, int flags);
+
+    public abstract void unbindService(ServiceConnection conn);
+}
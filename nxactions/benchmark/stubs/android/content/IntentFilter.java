@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.content;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IntentFilter {
+    private final List<String> mActions = new ArrayList<String>();
+    private final List<String> mDataSchemes = new ArrayList<String>();
+
+    public IntentFilter() {
+    }
+
+    public IntentFilter(String action) {
+        mActions.add(action);
+    }
+
+    public final void addAction(String action) {
+        mActions.add(action);
+    }
+
+    public final boolean hasAction(String action) {
+        return mActions.contains(action);
+    }
+
+    public final void addDataScheme(String scheme) {
+        mDataSchemes.add(scheme);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.content.pm;
+
+import java.util.Collections;
+import java.util.List;
+
+import android.content.Intent;
+
+public class PackageManager {
+    public static final int GET_SERVICES = 0x00000004;
+    public static final int GET_PROVIDERS = 0x00000008;
+    public static final int MATCH_DEFAULT_ONLY = 0x00010000;
+
+    public static class NameNotFoundException extends Exception {
+        public NameNotFoundException(String name) {
+            super(name);
+        }
+    }
+
+    public PackageInfo getPackageInfo(String packageName, int flags)
+            throws NameNotFoundException {
+        throw new NameNotFoundException(packageName);
+    }
+
+    public ResolveInfo resolveActivity(Intent intent, int flags) {
+        return null;
+    }
+
+    public List<ResolveInfo> queryIntentActivities(Intent intent, int flags) {
+        return Collections.emptyList();
+    }
+}
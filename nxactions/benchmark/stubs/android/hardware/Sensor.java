@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.hardware;
+
+public final class Sensor {
+    public static final int TYPE_ALL = -1;
+
+    private final int mType;
+    private final String mName;
+    private final int mFifoMaxEventCount;
+    private final boolean mWakeUpSensor;
+
+    public Sensor(int type, String name, int fifoMaxEventCount, boolean wakeUpSensor) {
+        mType = type;
+        mName = name;
+        mFifoMaxEventCount = fifoMaxEventCount;
+        mWakeUpSensor = wakeUpSensor;
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public int getFifoMaxEventCount() {
+        return mFifoMaxEventCount;
+    }
+
+    public int getMinDelay() {
+        return 0;
+    }
+
+    public int getFifoReservedEventCount() {
+        return 0;
+    }
+
+    public boolean isWakeUpSensor() {
+        return mWakeUpSensor;
+    }
+
+    @Override
+    public String toString() {
+        return "{Sensor name=\"" + mName + "\", type=" + mType + "}";
+    }
+}
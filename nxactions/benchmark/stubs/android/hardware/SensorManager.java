@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.hardware;
+
+import java.util.Collections;
+import java.util.List;
+
+import android.os.Handler;
+
+public class SensorManager {
+    public static final int SENSOR_DELAY_FASTEST = 0;
+    public static final int SENSOR_DELAY_GAME = 1;
+    public static final int SENSOR_DELAY_UI = 2;
+    public static final int SENSOR_DELAY_NORMAL = 3;
+
+    public List<Sensor> getSensorList(int type) {
+        return Collections.emptyList();
+    }
+
+    public Sensor getDefaultSensor(int type) {
+        return null;
+    }
+
+    public Sensor getDefaultSensor(int type, boolean wakeUp) {
+        return null;
+    }
+
+    public boolean registerListener(SensorEventListener listener, Sensor sensor,
+            int samplingPeriodUs) {
+        return registerListener(listener, sensor, samplingPeriodUs, 0, null);
+    }
+
+    public boolean registerListener(SensorEventListener listener, Sensor sensor,
+            int samplingPeriodUs, int maxReportLatencyUs) {
+        return registerListener(listener, sensor, samplingPeriodUs, maxReportLatencyUs, null);
+    }
+
+    public boolean registerListener(SensorEventListener listener, Sensor sensor,
+            int samplingPeriodUs, int maxReportLatencyUs, Handler handler) {
+        return false;
+    }
+
+    public void unregisterListener(SensorEventListener listener) {
+    }
+
+    public void unregisterListener(SensorEventListener listener, Sensor sensor) {
+    }
+
+    public boolean flush(SensorEventListener listener) {
+        return false;
+    }
+}
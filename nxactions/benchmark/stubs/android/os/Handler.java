@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+public class Handler {
+    public interface Callback {
+        boolean handleMessage(Message msg);
+    }
+
+    private final Looper mLooper;
+    private final Callback mCallback;
+
+    public Handler() {
+        this(Looper.myLooper(), null);
+    }
+
+    public Handler(Callback callback) {
+        this(Looper.myLooper(), callback);
+    }
+
+    public Handler(Looper looper) {
+        this(looper, null);
+    }
+
+    public Handler(Looper looper, Callback callback) {
+        if (looper == null) {
+            throw new RuntimeException(
+                "Can't create handler inside thread that has not called Looper.prepare()");
+        }
+        mLooper = looper;
+        mCallback = callback;
+    }
+
+    public void handleMessage(Message msg) {
+    }
+
+    public void dispatchMessage(Message msg) {
+        if (msg.callback != null) {
+            msg.callback.run();
+        } else if (mCallback == null || !mCallback.handleMessage(msg)) {
+            handleMessage(msg);
+        }
+    }
+
+    public final Looper getLooper() {
+        return mLooper;
+    }
+
+    public final Message obtainMessage() {
+        return obtainMessage(0, 0, 0, null);
+    }
+
+    public final Message obtainMessage(int what) {
+        return obtainMessage(what, 0, 0, null);
+    }
+
+    public final Message obtainMessage(int what, Object obj) {
+        return obtainMessage(what, 0, 0, obj);
+    }
+
+    public final Message obtainMessage(int what, int arg1, int arg2, Object obj) {
+        Message msg = Message.obtain();
+        msg.target = this;
+        msg.what = what;
+        msg.arg1 = arg1;
+        msg.arg2 = arg2;
+        msg.obj = obj;
+        return msg;
+    }
+
+    public final boolean post(Runnable r) {
+        return postDelayed(r, 0);
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        Message msg = obtainMessage();
+        msg.callback = r;
+        return sendMessageDelayed(msg, delayMillis);
+    }
+
+    public final boolean postAtFrontOfQueue(Runnable r) {
+        Message msg = obtainMessage();
+        msg.callback = r;
+        return sendMessageAtFrontOfQueue(msg);
+    }
+
+    public final void removeCallbacks(Runnable r) {
+        mLooper.mQueue.removeCallbacks(this, r);
+    }
+
+    public final boolean sendMessage(Message msg) {
+        return sendMessageDelayed(msg, 0);
+    }
+
+    public final boolean sendEmptyMessage(int what) {
+        return sendMessage(obtainMessage(what));
+    }
+
+    public final boolean sendEmptyMessageDelayed(int what, long delayMillis) {
+        return sendMessageDelayed(obtainMessage(what), delayMillis);
+    }
+
+    public final boolean sendMessageDelayed(Message msg, long delayMillis) {
+        msg.target = this;
+        return mLooper.mQueue.enqueueMessage(msg,
+                SystemClock.uptimeMillis() + Math.max(delayMillis, 0));
+    }
+
+    public final boolean sendMessageAtFrontOfQueue(Message msg) {
+        msg.target = this;
+        return mLooper.mQueue.enqueueMessage(msg, 0);
+    }
+
+    public final boolean hasMessages(int what) {
+        return mLooper.mQueue.hasMessages(this, what, null);
+    }
+
+    public final void removeMessages(int what) {
+        mLooper.mQueue.removeMessages(this, what, null);
+    }
+
+    public final void removeMessages(int what, Object object) {
+        mLooper.mQueue.removeMessages(this, what, object);
+    }
+}
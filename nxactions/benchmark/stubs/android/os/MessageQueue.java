@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+public final class MessageQueue {
+    private final PriorityQueue<Message> mMessages = new PriorityQueue<Message>(16,
+            new Comparator<Message>() {
+        @Override
+        public int compare(Message a, Message b) {
+            if (a.when != b.when) {
+                return a.when < b.when ? -1 : 1;
+            }
+            return a.seq < b.seq ? -1 : (a.seq == b.seq ? 0 : 1);
+        }
+    });
+    private long mNextSeq;
+    private long mNextFrontSeq = -1;
+    private boolean mQuitting;
+
+    MessageQueue() {
+    }
+
+    synchronized boolean enqueueMessage(Message msg, long when) {
+        if (mQuitting) {
+            return false;
+        }
+        msg.when = when;
+        msg.seq = when == 0 ? mNextFrontSeq-- : mNextSeq++;
+        mMessages.add(msg);
+        notifyAll();
+        return true;
+    }
+
+    synchronized Message next() {
+        while (true) {
+            if (mQuitting) {
+                return null;
+            }
+            Message msg = mMessages.peek();
+            long now = SystemClock.uptimeMillis();
+            if (msg != null && msg.when <= now) {
+                return mMessages.poll();
+            }
+            try {
+                if (msg == null) {
+                    wait();
+                } else {
+                    wait(msg.when - now);
+                }
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+    }
+
+    synchronized boolean hasMessages(Handler h, int what, Object object) {
+        for (Message msg : mMessages) {
+            if (msg.target == h && msg.callback == null && msg.what == what &&
+                    (object == null || msg.obj == object)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized void removeMessages(Handler h, int what, Object object) {
+        Iterator<Message> it = mMessages.iterator();
+        while (it.hasNext()) {
+            Message msg = it.next();
+            if (msg.target == h && msg.callback == null && msg.what == what &&
+                    (object == null || msg.obj == object)) {
+                it.remove();
+            }
+        }
+    }
+
+    synchronized void removeCallbacks(Handler h, Runnable r) {
+        Iterator<Message> it = mMessages.iterator();
+        while (it.hasNext()) {
+            Message msg = it.next();
+            if (msg.target == h && msg.callback == r) {
+                it.remove();
+            }
+        }
+    }
+
+    synchronized void quit() {
+        mQuitting = true;
+        mMessages.clear();
+        notifyAll();
+    }
+}
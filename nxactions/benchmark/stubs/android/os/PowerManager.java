@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+public class PowerManager {
+    public static final int PARTIAL_WAKE_LOCK = 0x00000001;
+    public static final int SCREEN_BRIGHT_WAKE_LOCK = 0x0000000a;
+    public static final int ACQUIRE_CAUSES_WAKEUP = 0x10000000;
+
+    public WakeLock newWakeLock(int levelAndFlags, String tag) {
+        return new WakeLock(tag);
+    }
+
+    public boolean isInteractive() {
+        return true;
+    }
+
+    public final class WakeLock {
+        private final String mTag;
+        private boolean mRefCounted = true;
+        private int mCount;
+        private boolean mHeld;
+
+        WakeLock(String tag) {
+            mTag = tag;
+        }
+
+        public synchronized void setReferenceCounted(boolean value) {
+            mRefCounted = value;
+        }
+
+        public synchronized void acquire() {
+            if (!mRefCounted || mCount++ == 0) {
+                mHeld = true;
+            }
+        }
+
+        // Timeouts are not enforced on the host
+        public void acquire(long timeout) {
+            acquire();
+        }
+
+        public synchronized void release() {
+            if (!mRefCounted || --mCount == 0) {
+                mHeld = false;
+            }
+        }
+
+        public synchronized boolean isHeld() {
+            return mHeld;
+        }
+
+        @Override
+        public String toString() {
+            return "WakeLock{" + mTag + " held=" + mHeld + "}";
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+// There is no suspend on the host, uptime is the monotonic clock and elapsed realtime
+// only runs ahead of it by the suspends benchmarks pretended to go through
+public final class SystemClock {
+    private static volatile long sSuspendedNs;
+
+    private SystemClock() {
+    }
+
+    // Host only: lets rate limits on elapsed realtime see time pass without waiting
+    public static synchronized void simulateSuspend(long ms) {
+        sSuspendedNs += ms * 1000000;
+    }
+
+    public static long uptimeMillis() {
+        return System.nanoTime() / 1000000;
+    }
+
+    public static long elapsedRealtime() {
+        return elapsedRealtimeNanos() / 1000000;
+    }
+
+    public static long elapsedRealtimeNanos() {
+        return System.nanoTime() + sSuspendedNs;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.util;
+
+import java.util.Arrays;
+
+public class SparseArray<E> {
+    private int[] mKeys = new int[0];
+    private Object[] mValues = new Object[0];
+
+    public E get(int key) {
+        return get(key, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int key, E valueIfKeyNotFound) {
+        int i = Arrays.binarySearch(mKeys, key);
+        return i >= 0 ? (E) mValues[i] : valueIfKeyNotFound;
+    }
+
+    public void put(int key, E value) {
+        int i = Arrays.binarySearch(mKeys, key);
+        if (i >= 0) {
+            mValues[i] = value;
+            return;
+        }
+        i = ~i;
+        int[] keys = new int[mKeys.length + 1];
+        Object[] values = new Object[mValues.length + 1];
+        System.arraycopy(mKeys, 0, keys, 0, i);
+        System.arraycopy(mValues, 0, values, 0, i);
+        keys[i] = key;
+        values[i] = value;
+        System.arraycopy(mKeys, i, keys, i + 1, mKeys.length - i);
+        System.arraycopy(mValues, i, values, i + 1, mValues.length - i);
+        mKeys = keys;
+        mValues = values;
+    }
+
+    public void delete(int key) {
+        int i = Arrays.binarySearch(mKeys, key);
+        if (i < 0) {
+            return;
+        }
+        int[] keys = new int[mKeys.length - 1];
+        Object[] values = new Object[mValues.length - 1];
+        System.arraycopy(mKeys, 0, keys, 0, i);
+        System.arraycopy(mValues, 0, values, 0, i);
+        System.arraycopy(mKeys, i + 1, keys, i, mKeys.length - i - 1);
+        System.arraycopy(mValues, i + 1, values, i, mValues.length - i - 1);
+        mKeys = keys;
+        mValues = values;
+    }
+
+    public void remove(int key) {
+        delete(key);
+    }
+
+    public int size() {
+        return mKeys.length;
+    }
+
+    public int keyAt(int index) {
+        return mKeys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E valueAt(int index) {
+        return (E) mValues[index];
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+public final class Display {
+    public static final int DEFAULT_DISPLAY = 0;
+
+    public static final int STATE_UNKNOWN = 0;
+    public static final int STATE_OFF = 1;
+    public static final int STATE_ON = 2;
+    public static final int STATE_DOZE = 3;
+    public static final int STATE_DOZE_SUSPEND = 4;
+
+    private final int mDisplayId;
+    private final int mState;
+
+    public Display(int displayId, int state) {
+        mDisplayId = displayId;
+        mState = state;
+    }
+
+    public int getDisplayId() {
+        return mDisplayId;
+    }
+
+    public int getState() {
+        return mState;
+    }
+}
@@ -24,10 +24,12 @@
 #include <stdint.h>
 #include <stdio.h>
 #include <stdlib.h>
+#include <string.h>
 #include <unistd.h>
 
 #include <linux/stm401.h>
 #include <cutils/log.h>
+#include <cutils/properties.h>
 #include <sys/ioctl.h>
 #include <sys/stat.h>
 #include <sys/types.h>
@@ -107,21 +109,72 @@ struct PACKED stm401_ir_config
     uint8_t swipe_vertical_ignore_count;
 }; /* size = 0xD4 */
 
+#define STM401_DEVICE_PROPERTY         "cmactions.stm401.device"
+
+enum {
+    STAT_OPENS,
+    STAT_IOCTLS,
+    STAT_SKIPPED_WRITES,
+    STAT_FAILURES,
+    STAT_COUNT
+};
+
 static pthread_mutex_t ioctl_mutex = PTHREAD_MUTEX_INITIALIZER;
 
+/* All of the following is protected by ioctl_mutex */
+static int stm401_fd = -1;
+static struct stm401_ir_config shadow_config;
+static int shadow_valid;
+/* Next config to write, the tuning fields are edited in place from Java */
+static struct stm401_ir_config pending_config;
+static int pending_valid;
+static int stats[STAT_COUNT];
+
+/*
+ * The device is kept open for the life of the process. The node can be overridden
+ * with a property so the IR path can be exercised against a fake device.
+ */
+static int stm401_open(void)
+{
+    if (stm401_fd < 0) {
+        char device[PROPERTY_VALUE_MAX];
+        property_get(STM401_DEVICE_PROPERTY, device, STM401_DEVICE);
+
+        stm401_fd = open(device, O_RDWR | O_CLOEXEC);
+        if (stm401_fd < 0) {
+            ALOGE("%s: Failed to open %s: %s\n", __func__, device, strerror(errno));
+            return -1;
+        }
+        stats[STAT_OPENS]++;
+    }
+    return stm401_fd;
+}
+
+static void stm401_close(void)
+{
+    if (stm401_fd >= 0) {
+        close(stm401_fd);
+        stm401_fd = -1;
+    }
+}
+
 int stm401_ioctl(unsigned long request, unsigned char* data)
 {
-    int fd = open(STM401_DEVICE, O_RDWR);
+    int fd = stm401_open();
     if (fd < 0) {
-        ALOGE("%s: Failed to open " STM401_DEVICE ": %s\n", __func__, strerror(errno));
+        stats[STAT_FAILURES]++;
         return 1;
     }
 
+    stats[STAT_IOCTLS]++;
     int ret = ioctl(fd, request, data);
-    close(fd);
 
     if (ret) {
         ALOGE("%s: Failed to ioctl " STM401_DEVICE ": %s\n", __func__, strerror(errno));
+        stats[STAT_FAILURES]++;
+        /* Start from a fresh handle and a fresh copy of the config next time */
+        stm401_close();
+        shadow_valid = 0;
         return 1;
     }
 
@@ -153,66 +206,126 @@ int write_ir_config(struct stm401_ir_config* config)
     return stm401_ioctl(STM401_IOCTL_SET_IR_CONFIG, (unsigned char*)config);
 }
 
-int set_ir_disabled(int disabled)
+/*
+ * Reloads the shadow copy from the hub. Only needed on first use and after an error,
+ * when the hub may have been reset and come back with a different tuning.
+ */
+static int refresh_shadow_config(void)
 {
     struct stm401_ir_config config;
 
-    pthread_mutex_lock(&ioctl_mutex);
-
     if (read_ir_config(&config, 1)) {
-        goto err;
+        shadow_valid = 0;
+        return 1;
+    }
+
+    if (shadow_valid && config.tuning_number != shadow_config.tuning_number) {
+        ALOGI("%s: Tuning number changed from %d to %d\n", __func__,
+                shadow_config.tuning_number, config.tuning_number);
+        pending_valid = 0;
     }
 
+    shadow_config = config;
+    shadow_valid = 1;
+
+    if (!pending_valid) {
+        pending_config = config;
+        pending_valid = 1;
+    }
+    return 0;
+}
+
+static int apply_ir_config(int disabled, int wake_config)
+{
+    struct stm401_ir_config config;
+
+    if (!shadow_valid && refresh_shadow_config()) {
+        return 1;
+    }
+
+    config = pending_config;
     if (disabled) {
         config.cmd_control |= STM401_IR_CONTROL_DISABLE;
     } else {
         config.cmd_control &= ~STM401_IR_CONTROL_DISABLE;
     }
+    config.cmd_config = wake_config & STM401_IR_WAKE_CONFIG_MASK;
 
-    if (write_ir_config(&config)) {
-        goto err;
+    pending_config.cmd_control = config.cmd_control;
+    pending_config.cmd_config = config.cmd_config;
+
+    if (!memcmp(&config, &shadow_config, sizeof(config))) {
+        stats[STAT_SKIPPED_WRITES]++;
+        return 0;
     }
 
-    pthread_mutex_unlock(&ioctl_mutex);
+    if (write_ir_config(&config)) {
+        return 1;
+    }
 
+    shadow_config = config;
     return 0;
-err:
-    pthread_mutex_unlock(&ioctl_mutex);
-    return 1;
 }
 
-int set_ir_wake_config(int wake_config)
+/*
+ * Applies the disable bit and the wake mask in a single write, so the hub never runs
+ * with IR enabled and a stale wake mask in between. A failed write is retried once
+ * against a freshly read config.
+ */
+int set_ir_config(int disabled, int wake_config)
 {
-    struct stm401_ir_config config;
+    int ret;
 
     pthread_mutex_lock(&ioctl_mutex);
 
-    if (read_ir_config(&config, 1)) {
-        goto err;
+    ret = apply_ir_config(disabled, wake_config);
+    if (ret) {
+        ret = apply_ir_config(disabled, wake_config);
     }
 
-    config.cmd_config = wake_config & STM401_IR_WAKE_CONFIG_MASK;
-
-    if (write_ir_config(&config)) {
-        goto err;
-    }
+    pthread_mutex_unlock(&ioctl_mutex);
 
-     pthread_mutex_unlock(&ioctl_mutex);
+    return ret;
+}
 
-    return 0;
-err:
-    pthread_mutex_unlock(&ioctl_mutex);
-    return 1;
+JNIEXPORT jboolean JNICALL Java_com_cyanogenmod_settings_device_IrGestureManager_nativeSetIrConfig(
+     UNUSED JNIEnv *env, UNUSED jclass thiz, jboolean disabled, jint wakeConfig)
+{
+    return set_ir_config(disabled == JNI_TRUE, (int)wakeConfig) ? JNI_FALSE : JNI_TRUE;
 }
 
-JNIEXPORT jboolean JNICALL Java_com_cyanogenmod_settings_device_IrGestureManager_nativeSetIrDisabled(
-     UNUSED JNIEnv *env, UNUSED jclass thiz, jboolean disabled)
+/*
+ * Returns a direct view of the pending config. Edits through it are picked up by the
+ * next nativeSetIrConfig, which must not run concurrently with them.
+ */
+JNIEXPORT jobject JNICALL
+Java_com_cyanogenmod_settings_device_IrGestureManager_nativeGetIrConfigBuffer(
+     JNIEnv *env, UNUSED jclass thiz)
 {
-    return set_ir_disabled(disabled == JNI_TRUE) ? JNI_FALSE : JNI_TRUE;
+    int ret;
+
+    pthread_mutex_lock(&ioctl_mutex);
+    ret = pending_valid ? 0 : refresh_shadow_config();
+    pthread_mutex_unlock(&ioctl_mutex);
+
+    if (ret) {
+        return NULL;
+    }
+
+    return (*env)->NewDirectByteBuffer(env, &pending_config, sizeof(pending_config));
 }
 
-JNIEXPORT jboolean JNICALL Java_com_cyanogenmod_settings_device_IrGestureManager_nativeSetIrWakeConfig(
-     UNUSED JNIEnv *env, UNUSED jclass thiz, jint wakeConfig)
+JNIEXPORT void JNICALL Java_com_cyanogenmod_settings_device_IrGestureManager_nativeGetIoStats(
+     JNIEnv *env, UNUSED jclass thiz, jintArray out)
 {
-    return set_ir_wake_config((int)wakeConfig) ? JNI_FALSE : JNI_TRUE;
+    jint values[STAT_COUNT];
+    int i;
+
+    pthread_mutex_lock(&ioctl_mutex);
+    for (i = 0; i < STAT_COUNT; i++) {
+        values[i] = stats[i];
+    }
+    pthread_mutex_unlock(&ioctl_mutex);
+
+    (*env)->SetIntArrayRegion(env, out, 0, STAT_COUNT, values);
 }
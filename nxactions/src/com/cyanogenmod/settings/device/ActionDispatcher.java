@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * Runs SensorActions off the sensor thread. Each action gets a Channel on one of two
+ * lanes, a high priority one for actions the user is waiting on (camera, torch,
+ * silencing) and a background one for best-effort actions (doze pulse, camera prewarm),
+ * so a slow binder call in one lane never delays the other and never blocks sensor
+ * delivery.
+ *
+ * A channel drops events whose SensorEvent.timestamp is within its coalescing window
+ * of the last accepted one, which catches duplicates delivered in one batch, and rate
+ * limits what is left with a token bucket on the monotonic clock. An action that its own
+ * gating denied gets its token back, and only actions that ran are accounted latency.
+ *
+ * Each channel holds a partial wake lock from dispatch until its queued actions ran, as
+ * the sensor's own wake lock is released once its callback returns.
+ */
+public class ActionDispatcher {
+    private static final String TAG = "CMActions-ActionDispatcher";
+
+    public static final int LANE_CRITICAL = 0;
+    public static final int LANE_BEST_EFFORT = 1;
+    private static final String[] LANE_NAMES = { "critical", "best_effort" };
+
+    private static final int MAX_PENDING_WAKE_LOCK_MS = 2000;
+
+    private final Handler[] mLanes = new Handler[LANE_NAMES.length];
+    private final GestureLatencyTracker mLatencyTracker;
+    private final WakeLockPool mWakeLockPool;
+    private final List<Channel> mChannels = new ArrayList<Channel>();
+
+    public ActionDispatcher(GestureLatencyTracker latencyTracker, WakeLockPool wakeLockPool) {
+        mLatencyTracker = latencyTracker;
+        mWakeLockPool = wakeLockPool;
+        mLanes[LANE_CRITICAL] = startLane(LANE_CRITICAL, Process.THREAD_PRIORITY_URGENT_DISPLAY);
+        mLanes[LANE_BEST_EFFORT] = startLane(LANE_BEST_EFFORT, Process.THREAD_PRIORITY_BACKGROUND);
+    }
+
+    private static Handler startLane(int lane, int priority) {
+        HandlerThread thread = new HandlerThread("CMActions-" + LANE_NAMES[lane], priority);
+        thread.start();
+        return new Handler(thread.getLooper());
+    }
+
+    /**
+     * Creates the channel for action. Events are coalesced within coalesceMs of each
+     * other, and at most burst of them run before further ones need a token, one of
+     * which is refilled every refillMs.
+     */
+    public synchronized Channel createChannel(String name, SensorAction action, int lane,
+            int coalesceMs, int burst, int refillMs) {
+        Channel channel = new Channel(name, action, mLanes[lane], lane, coalesceMs, burst,
+                refillMs);
+        mChannels.add(channel);
+        return channel;
+    }
+
+    public synchronized void dump(MetricsWriter writer) {
+        writer.section("dispatch");
+        for (Channel channel : mChannels) {
+            channel.dump(writer);
+        }
+    }
+
+    public class Channel {
+        private final String mName;
+        private final SensorAction mAction;
+        private final Handler mHandler;
+        private final int mLane;
+        private final long mCoalesceNs;
+        private final int mBurst;
+        private final long mRefillMs;
+        private final WakeLockPool.FeatureLock mPendingLock;
+        private final AtomicInteger mPending = new AtomicInteger();
+
+        // Guarded by this, only ever held for the bookkeeping below
+        private long mLastEventNs = Long.MIN_VALUE;
+        private double mTokens;
+        private long mLastRefillMs;
+
+        private long mDispatched;
+        private long mCoalesced;
+        private long mRateLimited;
+        private long mDenied;
+
+        Channel(String name, SensorAction action, Handler handler, int lane, int coalesceMs,
+                int burst, int refillMs) {
+            mName = name;
+            mAction = action;
+            mHandler = handler;
+            mLane = lane;
+            mCoalesceNs = coalesceMs * 1000000L;
+            mBurst = burst;
+            mRefillMs = refillMs;
+            mTokens = burst;
+            mLastRefillMs = SystemClock.elapsedRealtime();
+            mPendingLock = mWakeLockPool.create("dispatch." + name,
+                    PowerManager.PARTIAL_WAKE_LOCK, MAX_PENDING_WAKE_LOCK_MS);
+        }
+
+        /**
+         * Queues the action for the event with the given timestamp, unless it is coalesced
+         * or rate limited. Never waits on an action; gesture is the GestureLatencyTracker
+         * gesture to account the event's latency to, once the action ran.
+         */
+        public void dispatch(final int gesture, final long eventTimestampNs,
+                final long callbackNs) {
+            if (!accept(eventTimestampNs)) {
+                return;
+            }
+
+            // Acquiring is a binder call, so only the first pending action pays for it,
+            // and never under the channel's lock
+            if (mPending.getAndIncrement() == 0) {
+                mPendingLock.acquire(MAX_PENDING_WAKE_LOCK_MS);
+            }
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    boolean ran = false;
+                    try {
+                        ran = mAction.action();
+                        if (ran) {
+                            mLatencyTracker.record(gesture, eventTimestampNs, callbackNs);
+                        }
+                    } finally {
+                        finished(ran);
+                    }
+                }
+            });
+        }
+
+        private synchronized boolean accept(long eventTimestampNs) {
+            if (mLastEventNs != Long.MIN_VALUE && eventTimestampNs >= mLastEventNs &&
+                    eventTimestampNs - mLastEventNs < mCoalesceNs) {
+                ActionsLog.d(TAG, "Coalescing event at %d", eventTimestampNs);
+                mCoalesced++;
+                return false;
+            }
+
+            long now = SystemClock.elapsedRealtime();
+            if (mRefillMs > 0) {
+                mTokens = Math.min(mBurst, mTokens + (double) (now - mLastRefillMs) / mRefillMs);
+            }
+            mLastRefillMs = now;
+            if (mTokens < 1) {
+                ActionsLog.d(TAG, "Rate limiting event at %d", eventTimestampNs);
+                mRateLimited++;
+                return false;
+            }
+
+            mTokens -= 1;
+            mLastEventNs = eventTimestampNs;
+            mDispatched++;
+            return true;
+        }
+
+        private synchronized void denied() {
+            // Denied events do not count against the rate limit
+            mTokens = Math.min(mBurst, mTokens + 1);
+            mDenied++;
+        }
+
+        private void finished(boolean ran) {
+            if (!ran) {
+                denied();
+            }
+            if (mPending.decrementAndGet() == 0) {
+                mPendingLock.release();
+                // A dispatch in between may have acquired just before this release
+                if (mPending.get() > 0) {
+                    mPendingLock.acquire(MAX_PENDING_WAKE_LOCK_MS);
+                }
+            }
+        }
+
+        synchronized void dump(MetricsWriter writer) {
+            writer.value(mName + ".lane", LANE_NAMES[mLane]);
+            writer.value(mName + ".dispatched", mDispatched);
+            writer.value(mName + ".coalesced", mCoalesced);
+            writer.value(mName + ".rate_limited", mRateLimited);
+            writer.value(mName + ".denied", mDenied);
+        }
+    }
+}
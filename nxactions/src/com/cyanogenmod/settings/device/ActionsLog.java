@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+import android.util.Log;
+
+/**
+ * Debug logging for the sensor event path. Callers pass a constant format string and
+ * primitive arguments, which are stored in a preallocated ring and only formatted when
+ * flushed to logcat or dumped, so logging an event never allocates. Everything is a
+ * no-op unless "setprop log.tag.CMActions DEBUG" was set when the service started.
+ */
+public final class ActionsLog {
+    private static final String TAG = "CMActions";
+
+    public static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
+
+    private static final int CAPACITY = 256;
+
+    private static final int ARG_LONG = 0;
+    private static final int ARG_FLOAT = 1;
+    private static final int ARG_BOOLEAN = 2;
+
+    private static final String[] sTags = new String[CAPACITY];
+    private static final String[] sFormats = new String[CAPACITY];
+    private static final byte[] sArgTypes = new byte[CAPACITY];
+    private static final long[] sArgs = new long[CAPACITY * 3];
+
+    // Total number of entries written, and how many of them were already flushed
+    private static long sCount;
+    private static long sFlushed;
+
+    private ActionsLog() {
+    }
+
+    public static void d(String tag, String format) {
+        if (DEBUG) {
+            append(tag, format, ARG_LONG, 0, 0, 0);
+        }
+    }
+
+    public static void d(String tag, String format, long a) {
+        if (DEBUG) {
+            append(tag, format, ARG_LONG, a, 0, 0);
+        }
+    }
+
+    public static void d(String tag, String format, long a, long b, long c) {
+        if (DEBUG) {
+            append(tag, format, ARG_LONG, a, b, c);
+        }
+    }
+
+    public static void d(String tag, String format, float a, float b, float c) {
+        if (DEBUG) {
+            append(tag, format, ARG_FLOAT, Float.floatToRawIntBits(a),
+                Float.floatToRawIntBits(b), Float.floatToRawIntBits(c));
+        }
+    }
+
+    public static void d(String tag, String format, boolean a) {
+        if (DEBUG) {
+            append(tag, format, ARG_BOOLEAN, a ? 1 : 0, 0, 0);
+        }
+    }
+
+    public static void d(String tag, String format, boolean a, boolean b, boolean c) {
+        if (DEBUG) {
+            append(tag, format, ARG_BOOLEAN, a ? 1 : 0, b ? 1 : 0, c ? 1 : 0);
+        }
+    }
+
+    private static synchronized void append(String tag, String format, int argType,
+            long a, long b, long c) {
+        int i = (int) (sCount % CAPACITY);
+        sTags[i] = tag;
+        sFormats[i] = format;
+        sArgTypes[i] = (byte) argType;
+        sArgs[3 * i] = a;
+        sArgs[3 * i + 1] = b;
+        sArgs[3 * i + 2] = c;
+        sCount++;
+    }
+
+    // Writes the entries logged since the last flush to logcat. Must not be called from
+    // the sensor thread.
+    public static synchronized void flush() {
+        if (!DEBUG) {
+            return;
+        }
+        long first = Math.max(sFlushed, sCount - CAPACITY);
+        if (first > sFlushed) {
+            Log.d(TAG, "Dropped " + (first - sFlushed) + " debug log entries");
+        }
+        for (long n = first; n < sCount; n++) {
+            int i = (int) (n % CAPACITY);
+            Log.d(sTags[i], format(i));
+        }
+        sFlushed = sCount;
+    }
+
+    public static synchronized void dump(PrintWriter pw) {
+        long first = Math.max(0, sCount - CAPACITY);
+        for (long n = first; n < sCount; n++) {
+            int i = (int) (n % CAPACITY);
+            pw.println(sTags[i] + ": " + format(i));
+        }
+    }
+
+    private static String format(int i) {
+        Object[] args = new Object[3];
+        for (int j = 0; j < 3; j++) {
+            long arg = sArgs[3 * i + j];
+            switch (sArgTypes[i]) {
+                case ARG_FLOAT:
+                    args[j] = Float.intBitsToFloat((int) arg);
+                    break;
+                case ARG_BOOLEAN:
+                    args[j] = arg != 0;
+                    break;
+                default:
+                    args[j] = arg;
+                    break;
+            }
+        }
+        return String.format(Locale.US, sFormats[i], args);
+    }
+}
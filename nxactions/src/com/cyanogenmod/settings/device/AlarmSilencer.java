@@ -21,44 +21,49 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.SharedPreferences;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
-import android.preference.PreferenceManager;
+import android.os.SystemClock;
 import android.util.Log;
 
 import static com.cyanogenmod.settings.device.IrGestureManager.*;
 
-public class AlarmSilencer extends Activity implements SensorEventListener {
+public class AlarmSilencer extends Activity implements ArmingReconciler.Feature,
+        SensorEventListener {
     private static final String TAG = "CMActions-AlarmSilencer";
 
     private static final int IR_GESTURES_FOR_ALARM = (1 << IR_GESTURE_SWIPE);
-    private static final String ALARM_SILENCE_KEY = "gesture_ir_silence";
 
     public static final String ALARM_ALERT_ACTION = "com.android.deskclock.ALARM_ALERT";
     public static final String ALARM_SNOOZE_ACTION = "com.android.deskclock.ALARM_SNOOZE";
     public static final String ALARM_DISMISS_ACTION = "com.android.deskclock.ALARM_DISMISS";
     public static final String ALARM_DONE_ACTION = "com.android.deskclock.ALARM_DONE";
 
-    private SensorHelper mSensorHelper;
     private Sensor mSensor;
-    private IrGestureVote mIrGestureVote;
+    private ArmingReconciler mReconciler;
+    private SensorEventRecorder mRecorder;
+    private ActionDispatcher.Channel mSnoozeAction;
 
     private Context mContext;
+    private GesturePreferences mPreferences;
 
-    private boolean mAlarmSilenceEnabled = true;
-
-    public AlarmSilencer(Context context, SensorHelper sensorHelper, IrGestureManager irGestureManager) {
+    public AlarmSilencer(Context context, GesturePreferences preferences,
+                            SensorHelper sensorHelper, ArmingReconciler reconciler,
+                            SensorEventRecorder recorder, ActionDispatcher dispatcher) {
         mContext = context;
-        mSensorHelper = sensorHelper;
+        mPreferences = preferences;
+        mRecorder = recorder;
         mSensor = sensorHelper.getIrGestureSensor();
-        mIrGestureVote = new IrGestureVote(irGestureManager);
-        mIrGestureVote.voteForSensors(0);
-
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
-        loadPreferences(sharedPrefs);
-        sharedPrefs.registerOnSharedPreferenceChangeListener(mPrefListener);
+        mSnoozeAction = dispatcher.createChannel("alarm_snooze", new SensorAction() {
+            @Override
+            public boolean action() {
+                ActionsLog.d(TAG, "Sending alarm.snooze intent");
+                mContext.sendBroadcast(new Intent(ALARM_SNOOZE_ACTION));
+                return true;
+            }
+        }, ActionDispatcher.LANE_CRITICAL, 1000, 1, 1000);
+        mReconciler = reconciler;
 
         IntentFilter AlarmStateFilter = new IntentFilter(ALARM_ALERT_ACTION);
         AlarmStateFilter.addAction(ALARM_DISMISS_ACTION);
@@ -68,31 +73,31 @@ public class AlarmSilencer extends Activity implements SensorEventListener {
     }
 
     public void onAlarmStateOn() {
-        if (mAlarmSilenceEnabled) {
-            Log.d(TAG, "Alarm started");
-            mSensorHelper.registerListener(mSensor, this);
-            mIrGestureVote.voteForSensors(IR_GESTURES_FOR_ALARM);
-        } else {
-            Log.d(TAG, "Alarm stopped");
-            mSensorHelper.unregisterListener(this);
-            mIrGestureVote.voteForSensors(0);
-        }
+        Log.d(TAG, "Alarm started");
+        mReconciler.setAlarmActive(true);
     }
 
     public void onAlarmStateOff() {
         Log.d(TAG, "Alarm stopped");
-        mSensorHelper.unregisterListener(this);
-        mIrGestureVote.voteForSensors(0);
+        mReconciler.setAlarmActive(false);
+    }
+
+    @Override
+    public void addArming(ArmingReconciler.Conditions conditions, ArmingReconciler.Arming arming) {
+        if (mPreferences.getSnapshot().isIrSilenceEnabled() && conditions.isAlarmActive()) {
+            arming.register(mSensor, this);
+            arming.enableIrGestures(IR_GESTURES_FOR_ALARM);
+        }
     }
 
     @Override
-    public synchronized void onSensorChanged(SensorEvent event) {
+    public void onSensorChanged(SensorEvent event) {
+        long callbackNs = SystemClock.elapsedRealtimeNanos();
         int gesture = (int) event.values[1];
 
-        if (gesture == IR_GESTURE_SWIPE && mAlarmSilenceEnabled) {
-            Log.d(TAG, "Sending alarm.snooze intent");
-            mContext.sendBroadcast(new Intent(ALARM_SNOOZE_ACTION));
-            Log.d(TAG, "Alarm stopped");
+        if (gesture == IR_GESTURE_SWIPE && mPreferences.getSnapshot().isIrSilenceEnabled()) {
+            mSnoozeAction.dispatch(GestureLatencyTracker.GESTURE_ALARM_SNOOZE, event.timestamp,
+                callbackNs);
         }
     }
 
@@ -105,26 +110,16 @@ public class AlarmSilencer extends Activity implements SensorEventListener {
         public void onReceive(Context context, Intent intent) {
             String action = intent.getAction();
             if (action.equals(ALARM_DISMISS_ACTION)) {
+                mRecorder.recordAlarmState(SensorEventRecorder.ALARM_DISMISS);
                 onAlarmStateOff();
             } else if (action.equals(ALARM_ALERT_ACTION)) {
+                mRecorder.recordAlarmState(SensorEventRecorder.ALARM_ALERT);
                 onAlarmStateOn();
             } else {
+                mRecorder.recordAlarmState(action.equals(ALARM_SNOOZE_ACTION) ?
+                        SensorEventRecorder.ALARM_SNOOZE : SensorEventRecorder.ALARM_DONE);
                 onAlarmStateOff();
             }
         }
     };
-
-    private void loadPreferences(SharedPreferences sharedPreferences) {
-        mAlarmSilenceEnabled = sharedPreferences.getBoolean(ALARM_SILENCE_KEY, true);
-    }
-
-    private SharedPreferences.OnSharedPreferenceChangeListener mPrefListener =
-            new SharedPreferences.OnSharedPreferenceChangeListener() {
-        @Override
-        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-            if (ALARM_SILENCE_KEY.equals(key)) {
-                mAlarmSilenceEnabled = sharedPreferences.getBoolean(ALARM_SILENCE_KEY, true);
-            } 
-        }
-    };
 }
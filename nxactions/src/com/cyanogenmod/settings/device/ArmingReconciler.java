@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEventListener;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Display;
+
+/**
+ * Owns every gesture sensor registration and the IR gesture mask. Features declare what
+ * they want armed for the current conditions (display, call and alarm state, plus their
+ * own preferences) and the reconciler applies only the difference to what is registered,
+ * so SensorManager and IR ioctl traffic is the minimum the change needs.
+ *
+ * Call reconcile() whenever an input a feature depends on changes; preferences that
+ * gate arming should have the reconciler registered as their GesturePreferences.Listener.
+ * The desired arming is computed under the reconciler lock, but applied outside of it,
+ * one reconcile at a time, on the given handler, so callers never wait on SensorManager
+ * or the IR hub. Sensors that fail to register, or that the helper loses on a rebatch,
+ * are retried after a delay.
+ */
+public class ArmingReconciler implements DisplayStateSource.Listener,
+        GesturePreferences.Listener, SensorHelper.RegistrationListener {
+    private static final String TAG = "CMActions-Reconciler";
+
+    private static final long RETRY_DELAY_MS = 5000;
+
+    public interface Feature {
+        // Adds the sensors this feature wants registered, and the IR gestures it wants
+        // enabled, under the given conditions
+        void addArming(Conditions conditions, Arming arming);
+    }
+
+    public static class Conditions {
+        private int mDisplayState = Display.STATE_ON;
+        private boolean mRinging;
+        private boolean mAlarmActive;
+
+        public boolean isDisplayIn(int displayStates) {
+            return (displayStates & (1 << mDisplayState)) != 0;
+        }
+
+        public boolean isRinging() {
+            return mRinging;
+        }
+
+        public boolean isAlarmActive() {
+            return mAlarmActive;
+        }
+    }
+
+    public static class Arming {
+        private final Set<Registration> mRegistrations = new HashSet<Registration>();
+        private int mIrGestures;
+
+        public void register(Sensor sensor, SensorEventListener listener) {
+            if (sensor != null) {
+                mRegistrations.add(new Registration(sensor, listener));
+            }
+        }
+
+        public void enableIrGestures(int gestures) {
+            mIrGestures |= gestures;
+        }
+    }
+
+    private static class Registration {
+        final Sensor mSensor;
+        final SensorEventListener mListener;
+
+        Registration(Sensor sensor, SensorEventListener listener) {
+            mSensor = sensor;
+            mListener = listener;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Registration)) {
+                return false;
+            }
+            Registration other = (Registration) o;
+            return mSensor == other.mSensor && mListener == other.mListener;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(mSensor) + System.identityHashCode(mListener);
+        }
+    }
+
+    private final SensorHelper mSensorHelper;
+    private final IrGestureVote mIrGestureVote;
+    private final Handler mHandler;
+
+    // Guarded by this
+    private final List<Feature> mFeatures = new ArrayList<Feature>();
+    private final Conditions mConditions = new Conditions();
+    private boolean mApplyScheduled;
+    private boolean mDeferIr = true;
+
+    // Only written on the handler thread
+    private volatile Set<Registration> mRegistered = new HashSet<Registration>();
+    // Starts out different from any mask, so the first apply always votes and the IR
+    // manager gets to reset the hub even when no feature wants IR gestures
+    private volatile int mIrGestures = -1;
+    private volatile long mReconciles;
+    private volatile long mRegistrations;
+    private volatile long mUnregistrations;
+    private volatile long mIrUpdates;
+    private volatile long mFailures;
+    private final LatencyHistogram mReconcileLatency = new LatencyHistogram();
+
+    public ArmingReconciler(SensorHelper sensorHelper, IrGestureManager irGestureManager,
+            Handler handler) {
+        mSensorHelper = sensorHelper;
+        mIrGestureVote = irGestureManager.openVote(TAG);
+        mHandler = handler;
+        sensorHelper.setRegistrationListener(this);
+    }
+
+    public synchronized void addFeature(Feature feature) {
+        mFeatures.add(feature);
+    }
+
+    // Called on the handler thread by the screen dispatcher, so the new state is armed
+    // before the dispatcher reports the transition as handled
+    @Override
+    public void displayStateChanged(int state) {
+        synchronized (this) {
+            mConditions.mDisplayState = state;
+        }
+        // The display may flap, let the IR manager coalesce what it pushes to the hub
+        mApply.run();
+    }
+
+    public void setRinging(boolean ringing) {
+        synchronized (this) {
+            if (mConditions.mRinging == ringing) {
+                return;
+            }
+            mConditions.mRinging = ringing;
+        }
+        reconcile(false);
+    }
+
+    public void setAlarmActive(boolean alarmActive) {
+        synchronized (this) {
+            if (mConditions.mAlarmActive == alarmActive) {
+                return;
+            }
+            mConditions.mAlarmActive = alarmActive;
+        }
+        reconcile(false);
+    }
+
+    @Override
+    public void onPreferenceChanged(GesturePreferences.Snapshot snapshot) {
+        reconcile(false);
+    }
+
+    public void reconcile() {
+        reconcile(false);
+    }
+
+    @Override
+    public void onRegistrationLost(final Sensor sensor) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Set<Registration> registered = new HashSet<Registration>(mRegistered);
+                for (Iterator<Registration> i = registered.iterator(); i.hasNext(); ) {
+                    if (i.next().mSensor == sensor) {
+                        i.remove();
+                    }
+                }
+                mRegistered = registered;
+                mFailures++;
+                scheduleRetry();
+            }
+        });
+    }
+
+    private void scheduleRetry() {
+        mHandler.removeCallbacks(mRetry);
+        mHandler.postDelayed(mRetry, RETRY_DELAY_MS);
+    }
+
+    private final Runnable mRetry = new Runnable() {
+        @Override
+        public void run() {
+            reconcile();
+        }
+    };
+
+    private void reconcile(boolean deferIr) {
+        synchronized (this) {
+            // An update that must reach the hub right away wins over deferred ones
+            mDeferIr &= deferIr;
+            if (mApplyScheduled) {
+                return;
+            }
+            mApplyScheduled = true;
+        }
+        mHandler.post(mApply);
+    }
+
+    private final Runnable mApply = new Runnable() {
+        @Override
+        public void run() {
+            long startNs = SystemClock.elapsedRealtimeNanos();
+
+            Arming desired = new Arming();
+            boolean deferIr;
+            synchronized (ArmingReconciler.this) {
+                mApplyScheduled = false;
+                deferIr = mDeferIr;
+                mDeferIr = true;
+                for (Feature feature : mFeatures) {
+                    feature.addArming(mConditions, desired);
+                }
+            }
+
+            apply(desired, deferIr);
+            mReconciles++;
+            mReconcileLatency.record(SystemClock.elapsedRealtimeNanos() - startNs);
+        }
+    };
+
+    private void apply(Arming desired, boolean deferIr) {
+        Set<Registration> current = mRegistered;
+        for (Registration registration : current) {
+            if (!desired.mRegistrations.contains(registration)) {
+                mSensorHelper.unregisterListener(registration.mSensor, registration.mListener);
+                mUnregistrations++;
+            }
+        }
+
+        Set<Registration> registered = new HashSet<Registration>(desired.mRegistrations.size());
+        boolean failed = false;
+        for (Registration registration : desired.mRegistrations) {
+            if (current.contains(registration)) {
+                registered.add(registration);
+                continue;
+            }
+            try {
+                mSensorHelper.registerListener(registration.mSensor, registration.mListener);
+                mRegistrations++;
+                registered.add(registration);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to arm " + registration.mListener, e);
+                failed = true;
+            }
+        }
+        mRegistered = registered;
+        if (failed) {
+            mFailures++;
+            scheduleRetry();
+        }
+
+        if (desired.mIrGestures != mIrGestures) {
+            if (deferIr) {
+                mIrGestureVote.voteForSensorsDeferred(desired.mIrGestures);
+            } else {
+                mIrGestureVote.voteForSensors(desired.mIrGestures);
+            }
+            mIrGestures = desired.mIrGestures;
+            mIrUpdates++;
+        }
+    }
+
+    public void dump(MetricsWriter writer) {
+        writer.section("arming");
+        writer.value("registered", mRegistered.size());
+        writer.value("ir_gestures", "0x" + Integer.toHexString(Math.max(mIrGestures, 0)));
+        writer.value("reconciles", mReconciles);
+        writer.value("registrations", mRegistrations);
+        writer.value("unregistrations", mUnregistrations);
+        writer.value("ir_updates", mIrUpdates);
+        writer.value("failures", mFailures);
+        writer.histogram("reconcile", mReconcileLatency);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import android.hardware.Sensor;
+
+public class BatchingProfile {
+    private static final int SENSOR_DELAY_NORMAL_US = 200000;
+
+    public static final BatchingProfile FASTEST = new BatchingProfile(0, 0);
+    public static final BatchingProfile NORMAL = new BatchingProfile(SENSOR_DELAY_NORMAL_US, 0);
+
+    private final int mSamplingPeriodUs;
+    private final int mMaxReportLatencyUs;
+
+    public BatchingProfile(int samplingPeriodUs, int maxReportLatencyUs) {
+        mSamplingPeriodUs = samplingPeriodUs;
+        mMaxReportLatencyUs = maxReportLatencyUs;
+    }
+
+    public static BatchingProfile batched(int maxReportLatencyMs) {
+        return new BatchingProfile(SENSOR_DELAY_NORMAL_US, maxReportLatencyMs * 1000);
+    }
+
+    public int getSamplingPeriodUs() {
+        return mSamplingPeriodUs;
+    }
+
+    // Never ask for more latency than the sensor's FIFO can hold at this sampling period,
+    // otherwise the hub drops events or wakes the AP early anyway.
+    public int getMaxReportLatencyUs(Sensor sensor) {
+        int fifoMaxEventCount = sensor.getFifoMaxEventCount();
+        if (fifoMaxEventCount == 0) {
+            return 0;
+        }
+
+        int periodUs = Math.max(mSamplingPeriodUs, sensor.getMinDelay());
+        if (periodUs > 0) {
+            long fifoLatencyUs = (long) fifoMaxEventCount * periodUs;
+            if (fifoLatencyUs < mMaxReportLatencyUs) {
+                return (int) fifoLatencyUs;
+            }
+        }
+        return mMaxReportLatencyUs;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BatchingProfile)) {
+            return false;
+        }
+        BatchingProfile other = (BatchingProfile) o;
+        return mSamplingPeriodUs == other.mSamplingPeriodUs &&
+            mMaxReportLatencyUs == other.mMaxReportLatencyUs;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * mSamplingPeriodUs + mMaxReportLatencyUs;
+    }
+
+    @Override
+    public String toString() {
+        return "period=" + mSamplingPeriodUs + "us latency=" + mMaxReportLatencyUs + "us";
+    }
+}
@@ -19,26 +19,37 @@ package com.cyanogenmod.settings.device;
 import android.app.IntentService;
 import android.content.Context;
 import android.content.Intent;
-import android.os.PowerManager;
 import android.provider.Settings;
 import android.util.Log;
 
-import java.util.List;
-import java.util.LinkedList;
-
-public class CMActionsService extends IntentService implements ScreenStateNotifier {
+public class CMActionsService extends IntentService implements DisplayStateSource.Listener {
     private static final String TAG = "CMActions";
 
+    // The camera process stays cached well beyond this once started
+    private static final int CAMERA_PREWARM_INTERVAL_MS = 30 * 1000;
+
+    private GesturePreferences mPreferences;
+    private SensorEventRecorder mRecorder;
     private SensorHelper mSensorHelper;
-    private ScreenReceiver mScreenReceiver;
+    private GestureLatencyTracker mLatencyTracker;
+    private ActionDispatcher mActionDispatcher;
+    private WakeLockPool mWakeLockPool;
+    private DisplayStateSource mDisplayStateSource;
     private IrGestureManager mIrGestureManager;
+    private StartupTrace mStartupTrace;
+
+    private ScreenStateDispatcher mScreenStateDispatcher;
+    private ArmingReconciler mArmingReconciler;
 
+    // Feature components, created the first time their feature is enabled
     private CameraActivationAction mCameraActivationAction;
     private FlashlightActivationAction mFlashlightActivationAction;
     private DozePulseAction mDozePulseAction;
-
-    private List<ScreenStateNotifier> mScreenStateNotifiers = new LinkedList<ScreenStateNotifier>();
-
+    private ActionDispatcher.Channel mDozePulseChannel;
+    private ActionDispatcher.Channel mCameraPrewarmChannel;
+    private FlatUpSensor mFlatUpSensor;
+    private StowSensor mStowSensor;
+    private IrGestureSensor mIrGestureSensor;
     private IrSilencer mIrSilencer;
     private AlarmSilencer mAlarmSilencer;
 
@@ -49,49 +60,192 @@ public class CMActionsService extends IntentService implements ScreenStateNotifi
         mContext = context;
 
         Log.d(TAG, "Starting");
+        mStartupTrace = new StartupTrace();
+
+        long startNs = mStartupTrace.begin();
+        mPreferences = new GesturePreferences(context);
+        mRecorder = new SensorEventRecorder(context);
+        mStartupTrace.end("preferences", startNs);
+
+        startNs = mStartupTrace.begin();
+        mSensorHelper = new SensorHelper(context, mRecorder);
+        mStartupTrace.end("sensor_helper", startNs);
+
+        startNs = mStartupTrace.begin();
+        mScreenStateDispatcher = new ScreenStateDispatcher();
+        mIrGestureManager = new IrGestureManager(context);
+        mArmingReconciler = new ArmingReconciler(mSensorHelper, mIrGestureManager,
+                mScreenStateDispatcher.getHandler());
+        mScreenStateDispatcher.add(mSensorHelper);
+        mLatencyTracker = new GestureLatencyTracker();
+        mScreenStateDispatcher.add(mLatencyTracker);
+        mWakeLockPool = new WakeLockPool(context);
+        mActionDispatcher = new ActionDispatcher(mLatencyTracker, mWakeLockPool);
+        mStartupTrace.end("dispatch", startNs);
+
+        // The loader runs first so a feature enabled for the first time is armed by the
+        // reconcile that follows it
+        for (String key : new String[] { GesturePreferences.PICK_UP_KEY,
+                GesturePreferences.GESTURE_IR_KEY, GesturePreferences.GESTURE_IR_SILENCE_KEY,
+                GesturePreferences.GESTURE_CAMERA_KEY,
+                GesturePreferences.GESTURE_FLASHLIGHT_KEY }) {
+            mPreferences.addListener(key, mFeatureLoader);
+        }
+        mPreferences.addListener(GesturePreferences.PICK_UP_KEY, mArmingReconciler);
+        mPreferences.addListener(GesturePreferences.GESTURE_IR_KEY, mArmingReconciler);
+        mPreferences.addListener(GesturePreferences.GESTURE_IR_SILENCE_KEY, mArmingReconciler);
+        mPreferences.addListener(GesturePreferences.GESTURE_CAMERA_KEY, mArmingReconciler);
+        mPreferences.addListener(GesturePreferences.GESTURE_FLASHLIGHT_KEY, mArmingReconciler);
+        createEnabledFeatures(mPreferences.getSnapshot());
+
+        // Sensors are armed once the batching profile followed the display state
+        mScreenStateDispatcher.addListener(mArmingReconciler);
+        mScreenStateDispatcher.addListener(new DisplayStateSource.Listener() {
+            @Override
+            public void displayStateChanged(int state) {
+                mStartupTrace.armed();
+            }
+        });
+
+        startNs = mStartupTrace.begin();
+        mDisplayStateSource = new DisplayStateSource(context,
+                mScreenStateDispatcher.getHandler(), this);
+        mStartupTrace.end("display_state", startNs);
+    }
+
+    private synchronized boolean createEnabledFeatures(GesturePreferences.Snapshot snapshot) {
+        boolean created = false;
+        long startNs;
+
+        if (snapshot.isCameraEnabled() && mCameraActivationAction == null) {
+            startNs = mStartupTrace.begin();
+            mCameraActivationAction = new CameraActivationAction(mContext, mPreferences,
+                    mWakeLockPool);
+            mArmingReconciler.addFeature(new CameraActivationSensor(mPreferences, mSensorHelper,
+                    mActionDispatcher.createChannel("camera", mCameraActivationAction,
+                            ActionDispatcher.LANE_CRITICAL, 1000, 2, 2000)));
+            mStartupTrace.end("camera", startNs);
+            created = true;
+        }
+
+        if (snapshot.isFlashlightEnabled() && mFlashlightActivationAction == null) {
+            startNs = mStartupTrace.begin();
+            mFlashlightActivationAction = new FlashlightActivationAction(mContext, mPreferences);
+            mArmingReconciler.addFeature(new FlashlightActivationSensor(mPreferences,
+                    mSensorHelper, mActionDispatcher.createChannel("flashlight",
+                            mFlashlightActivationAction, ActionDispatcher.LANE_CRITICAL,
+                            mFlashlightActivationAction.getDuplicateWindowMs(), 3, 500)));
+            mStartupTrace.end("flashlight", startNs);
+            created = true;
+        }
+
+        if ((snapshot.isPickUpEnabled() || snapshot.isIrGestureEnabled()) &&
+                mDozePulseAction == null) {
+            mDozePulseAction = new DozePulseAction(mContext);
+            mScreenStateDispatcher.add(mDozePulseAction);
+            // Flat up, stow and IR approach share one pulse budget
+            mDozePulseChannel = mActionDispatcher.createChannel("doze", mDozePulseAction,
+                    ActionDispatcher.LANE_BEST_EFFORT, 250, 1,
+                    DozePulseAction.DELAY_BETWEEN_DOZES_IN_MS);
+        }
+
+        if (snapshot.isPickUpEnabled() && mFlatUpSensor == null) {
+            startNs = mStartupTrace.begin();
+            // A pick up often comes before a twist, the camera process is started then
+            mCameraPrewarmChannel = mActionDispatcher.createChannel("camera_prewarm",
+                    mCameraPrewarm, ActionDispatcher.LANE_BEST_EFFORT, 1000, 1,
+                    CAMERA_PREWARM_INTERVAL_MS);
+            mFlatUpSensor = new FlatUpSensor(mPreferences, mSensorHelper, mDozePulseChannel,
+                    mCameraPrewarmChannel);
+            mArmingReconciler.addFeature(mFlatUpSensor);
+            mStowSensor = new StowSensor(mPreferences, mSensorHelper, mDozePulseChannel,
+                    mCameraPrewarmChannel);
+            mArmingReconciler.addFeature(mStowSensor);
+            mStartupTrace.end("pick_up", startNs);
+            created = true;
+        }
 
-        mSensorHelper = new SensorHelper(context);
-        mScreenReceiver = new ScreenReceiver(context, this);
-        mIrGestureManager = new IrGestureManager();
-
-        mCameraActivationAction = new CameraActivationAction(context);
-        mFlashlightActivationAction = new FlashlightActivationAction(context);
-        mDozePulseAction = new DozePulseAction(context);
-        mScreenStateNotifiers.add(mDozePulseAction);
-
-        mScreenStateNotifiers.add(new CameraActivationSensor(mSensorHelper, mCameraActivationAction));
-        mScreenStateNotifiers.add(new FlashlightActivationSensor(mSensorHelper, mFlashlightActivationAction));
-        mScreenStateNotifiers.add(new FlatUpSensor(context, mSensorHelper, mDozePulseAction));
-        mScreenStateNotifiers.add(new IrGestureSensor(context, mSensorHelper, mDozePulseAction, mIrGestureManager));
-        mScreenStateNotifiers.add(new StowSensor(context, mSensorHelper, mDozePulseAction));
-
-        mIrSilencer = new IrSilencer(context, mSensorHelper, mIrGestureManager);
-        mAlarmSilencer = new AlarmSilencer(context, mSensorHelper, mIrGestureManager);
-
-        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
-        if (powerManager.isInteractive()) {
-            screenTurnedOn();
-        } else {
-            screenTurnedOff();
+        if (snapshot.isIrGestureEnabled() && mIrGestureSensor == null) {
+            startNs = mStartupTrace.begin();
+            mIrGestureSensor = new IrGestureSensor(mPreferences, mSensorHelper,
+                    mDozePulseChannel);
+            mArmingReconciler.addFeature(mIrGestureSensor);
+            mStartupTrace.end("ir_gesture", startNs);
+            created = true;
         }
+
+        if (snapshot.isIrSilenceEnabled() && mIrSilencer == null) {
+            startNs = mStartupTrace.begin();
+            mIrSilencer = new IrSilencer(mContext, mPreferences, mSensorHelper,
+                    mArmingReconciler, mRecorder, mActionDispatcher);
+            mArmingReconciler.addFeature(mIrSilencer);
+            mAlarmSilencer = new AlarmSilencer(mContext, mPreferences, mSensorHelper,
+                    mArmingReconciler, mRecorder, mActionDispatcher);
+            mArmingReconciler.addFeature(mAlarmSilencer);
+            mStartupTrace.end("ir_silence", startNs);
+            created = true;
+        }
+
+        return created;
     }
 
+    private final GesturePreferences.Listener mFeatureLoader = new GesturePreferences.Listener() {
+        @Override
+        public void onPreferenceChanged(GesturePreferences.Snapshot snapshot) {
+            if (createEnabledFeatures(snapshot)) {
+                mArmingReconciler.reconcile();
+            }
+        }
+    };
+
+    private final SensorAction mCameraPrewarm = new SensorAction() {
+        @Override
+        public boolean action() {
+            CameraActivationAction cameraAction;
+            synchronized (CMActionsService.this) {
+                cameraAction = mCameraActivationAction;
+            }
+            return cameraAction != null && cameraAction.prewarm();
+        }
+    };
+
     @Override
     protected void onHandleIntent(Intent intent) {
     }
 
     @Override
-    public void screenTurnedOn() {
-        for (ScreenStateNotifier screenStateNotifier : mScreenStateNotifiers) {
-            screenStateNotifier.screenTurnedOn();
-        }
+    public void displayStateChanged(int state) {
+        mRecorder.recordDisplayState(state);
+        mScreenStateDispatcher.displayStateChanged(state);
     }
 
-    @Override
-    public void screenTurnedOff() {
-        for (ScreenStateNotifier screenStateNotifier : mScreenStateNotifiers) {
-            screenStateNotifier.screenTurnedOff();
+    public void dump(MetricsWriter writer) {
+        writer.section("service");
+        writer.value("trace_enabled", mRecorder.isEnabled());
+        writer.value("display_state", mDisplayStateSource.getState());
+        mStartupTrace.dump(writer);
+        mPreferences.dump(writer);
+        mSensorHelper.dump(writer);
+        mIrGestureManager.dump(writer);
+        mArmingReconciler.dump(writer);
+
+        writer.section("actions");
+        synchronized (this) {
+            if (mCameraActivationAction != null) {
+                mCameraActivationAction.dump(writer);
+            }
+            if (mFlashlightActivationAction != null) {
+                mFlashlightActivationAction.dump(writer);
+            }
+            if (mDozePulseAction != null) {
+                mDozePulseAction.dump(writer);
+            }
         }
+
+        mActionDispatcher.dump(writer);
+        mWakeLockPool.dump(writer);
+        mLatencyTracker.dump(writer);
+        mScreenStateDispatcher.dump(writer);
     }
 
     private boolean isDozeEnabled() {
@@ -16,147 +16,135 @@
 
 package com.cyanogenmod.settings.device;
 
-import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import android.app.KeyguardManager;
-import android.content.ComponentName;
+import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.ActivityInfo;
-import android.content.pm.PackageManager;
-import android.content.pm.ResolveInfo;
-import android.content.SharedPreferences;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.AsyncTask;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
 import android.os.Vibrator;
-import android.preference.PreferenceManager;
-import android.provider.MediaStore;
 import android.util.Log;
 
 public class CameraActivationAction implements SensorAction {
     private static final String TAG = "CMActions";
 
     private static final int TURN_SCREEN_ON_WAKE_LOCK_MS = 500;
-    private static final String GESTURE_CAMERA_KEY = "gesture_camera";
+    private static final int MAX_SCREEN_ON_WAKE_LOCK_MS = 1000;
 
     private final KeyguardManager mKeyguardManager;
-    private PowerManager mPowerManager;
-    private PackageManager mPackageManager;
+    private WakeLockPool.FeatureLock mScreenOnLock;
+    private CameraTargetCache mCameraTargets;
+    private CameraPrewarmer mPrewarmer;
+    private Vibrator mVibrator;
 
     private Context mContext;
+    private GesturePreferences mPreferences;
 
-    private boolean mGestureCameraEnabled = true;
+    private final AtomicLong mFired = new AtomicLong();
+    private final AtomicLong mSuppressed = new AtomicLong();
 
-    public CameraActivationAction(Context context) {
+    public CameraActivationAction(Context context, GesturePreferences preferences,
+            WakeLockPool wakeLockPool) {
         mContext = context;
+        mPreferences = preferences;
         mKeyguardManager = (KeyguardManager) context.getSystemService(Context.KEYGUARD_SERVICE);
-        mPowerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
-        mPackageManager = context.getPackageManager();
-
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
-        loadPreferences(sharedPrefs);
-        sharedPrefs.registerOnSharedPreferenceChangeListener(mPrefListener);
+        mScreenOnLock = wakeLockPool.create("camera.screen_on",
+                PowerManager.SCREEN_BRIGHT_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP,
+                MAX_SCREEN_ON_WAKE_LOCK_MS);
+        mCameraTargets = new CameraTargetCache(context);
+        mPrewarmer = new CameraPrewarmer(context, mCameraTargets);
+        mVibrator = (Vibrator) context.getSystemService(Context.VIBRATOR_SERVICE);
     }
 
     @Override
-    public void action() {
-        if (mGestureCameraEnabled) {
-            vibrate();
-            turnScreenOn();
+    public boolean action() {
+        if (mPreferences.getSnapshot().isCameraEnabled()) {
+            mFired.incrementAndGet();
+            // The launch is what the user waits for, the haptic and the wake lock that
+            // turns the screen on run alongside it rather than ahead of it
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(mFeedback);
             if (mKeyguardManager.inKeyguardRestrictedInputMode()) {
                 launchSecureCamera();
             } else {
                 launchCamera();
             }
+            return true;
+        } else {
+            mSuppressed.incrementAndGet();
+            return false;
         }
     }
 
-    private void vibrate() {
-        Vibrator v = (Vibrator) mContext.getSystemService(Context.VIBRATOR_SERVICE);
-        v.vibrate(500);
+    // Starts the camera app's process ahead of a likely twist
+    public boolean prewarm() {
+        if (mPreferences.getSnapshot().isCameraEnabled()) {
+            mPrewarmer.prewarm();
+            return true;
+        }
+        return false;
     }
 
-    private void turnScreenOn() {
-        PowerManager.WakeLock wl = mPowerManager.newWakeLock(
-            PowerManager.SCREEN_BRIGHT_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP, TAG);
-        wl.acquire(TURN_SCREEN_ON_WAKE_LOCK_MS);
+    public void dump(MetricsWriter writer) {
+        writer.value("camera.fired", mFired.get());
+        writer.value("camera.suppressed", mSuppressed.get());
+        mCameraTargets.dump(writer);
+        mPrewarmer.dump(writer);
     }
 
-    private void launchCamera() {
-        Intent intent = createIntent(MediaStore.INTENT_ACTION_STILL_IMAGE_CAMERA);
-        if (getBestActivityInfo(intent) != null) {
-            // Only launch if we can succeed, but let the user pick the action
-            mContext.startActivity(intent);
+    private final Runnable mFeedback = new Runnable() {
+        @Override
+        public void run() {
+            turnScreenOn();
+            vibrate();
         }
-    }
+    };
 
-    private void launchSecureCamera() {
-        // Keyguard won't allow a picker, try to pick the secure intent in the package
-        // that would be the one used for a default action of launching the camera
-        Intent normalIntent = createIntent(MediaStore.INTENT_ACTION_STILL_IMAGE_CAMERA);
-        Intent secureIntent = createIntent(MediaStore.INTENT_ACTION_STILL_IMAGE_CAMERA_SECURE);
-        ActivityInfo normalActivity = getBestActivityInfo(normalIntent);
-        ActivityInfo secureActivity = getBestActivityInfo(secureIntent, normalActivity);
-        if (secureActivity != null) {
-            secureIntent.setComponent(componentName(secureActivity));
-            mContext.startActivity(secureIntent);
-        }
+    private void vibrate() {
+        mVibrator.vibrate(500);
     }
 
-    private Intent createIntent(String intentName) {
-        Intent intent = new Intent(intentName);
-        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-        intent.addFlags(Intent.FLAG_FROM_BACKGROUND);
-        return intent;
+    private void turnScreenOn() {
+        mScreenOnLock.acquire(TURN_SCREEN_ON_WAKE_LOCK_MS);
     }
 
-    private ActivityInfo getBestActivityInfo(Intent intent) {
-        ResolveInfo resolveInfo = mPackageManager.resolveActivity(intent, 0);
-        if (resolveInfo != null) {
-            return resolveInfo.activityInfo;
-        } else {
-            // If the resolving failed, just find our own best match
-            return getBestActivityInfo(intent, null);
+    private void launchCamera() {
+        // Only launch if we can succeed, but let the user pick the action
+        Intent intent = mCameraTargets.getNormalIntent();
+        if (intent != null && !startActivity(intent)) {
+            // The cached target went away without a package broadcast, resolve it again
+            mCameraTargets.onLaunchFailed();
+            intent = mCameraTargets.getNormalIntent();
+            if (intent != null) {
+                startActivity(intent);
+            }
         }
     }
 
-    private ActivityInfo getBestActivityInfo(Intent intent, ActivityInfo match) {
-        List <ResolveInfo> activities = mPackageManager.queryIntentActivities(intent, 0);
-        ActivityInfo best = null;
-        if (activities.size() > 0) {
-            best = activities.get(0).activityInfo;
-            if (match != null) {
-                String packageName = match.applicationInfo.packageName;
-                for (int i = activities.size()-1; i >= 0; i--) {
-                    ActivityInfo activityInfo = activities.get(i).activityInfo;
-                    if (packageName.equals(activityInfo.applicationInfo.packageName)) {
-                        best = activityInfo;
-                    }
-                }
+    private void launchSecureCamera() {
+        Intent intent = mCameraTargets.getSecureIntent();
+        if (intent != null && !startActivity(intent)) {
+            mCameraTargets.onLaunchFailed();
+            intent = mCameraTargets.getSecureIntent();
+            if (intent != null) {
+                startActivity(intent);
             }
         }
-        return best;
     }
 
-    private ComponentName componentName(ActivityInfo activity) {
-        return new ComponentName(activity.applicationInfo.packageName, activity.name);
-    }
-
-    private void loadPreferences(SharedPreferences sharedPreferences) {
-        mGestureCameraEnabled = sharedPreferences.getBoolean(GESTURE_CAMERA_KEY, true);
-    }
-
-    private SharedPreferences.OnSharedPreferenceChangeListener mPrefListener =
-            new SharedPreferences.OnSharedPreferenceChangeListener() {
-        @Override
-        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-            if (GESTURE_CAMERA_KEY.equals(key)) {
-                mGestureCameraEnabled = sharedPreferences.getBoolean(GESTURE_CAMERA_KEY, true);
-            } 
+    private boolean startActivity(Intent intent) {
+        try {
+            mContext.startActivity(intent);
+            return true;
+        } catch (ActivityNotFoundException e) {
+            Log.w(TAG, "Failed to launch " + intent, e);
+            return false;
         }
-    };
+    }
 }
@@ -30,42 +30,40 @@ import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
+import android.os.SystemClock;
 import android.provider.MediaStore;
-import android.util.Log;
 
-public class CameraActivationSensor implements ScreenStateNotifier, SensorEventListener {
+public class CameraActivationSensor implements ArmingReconciler.Feature, SensorEventListener {
     private static final String TAG = "CMActions-CameraSensor";
 
     private static final int TURN_SCREEN_ON_WAKE_LOCK_MS = 500;
 
-    private SensorHelper mSensorHelper;
-    private SensorAction mSensorAction;
+    private GesturePreferences mPreferences;
+    private ActionDispatcher.Channel mAction;
 
     private Sensor mCameraActivationSensor;
 
     private Context mContext;
 
-    public CameraActivationSensor(SensorHelper sensorHelper, SensorAction sensorAction) {
-        mSensorHelper = sensorHelper;
-        mSensorAction = sensorAction;
+    public CameraActivationSensor(GesturePreferences preferences, SensorHelper sensorHelper,
+            ActionDispatcher.Channel action) {
+        mPreferences = preferences;
+        mAction = action;
         mCameraActivationSensor = sensorHelper.getCameraActivationSensor();
-
-        Log.d(TAG, "Enabling");
-        mSensorHelper.registerListener(mCameraActivationSensor, this);
-    }
-
-    @Override
-    public void screenTurnedOn() {
     }
 
     @Override
-    public void screenTurnedOff() {
+    public void addArming(ArmingReconciler.Conditions conditions, ArmingReconciler.Arming arming) {
+        if (mPreferences.getSnapshot().isCameraEnabled()) {
+            arming.register(mCameraActivationSensor, this);
+        }
     }
 
     @Override
     public void onSensorChanged(SensorEvent event) {
-        Log.d(TAG, "activate camera");
-        mSensorAction.action();
+        long callbackNs = SystemClock.elapsedRealtimeNanos();
+        ActionsLog.d(TAG, "activate camera");
+        mAction.dispatch(GestureLatencyTracker.GESTURE_CAMERA, event.timestamp, callbackNs);
     }
 
     @Override
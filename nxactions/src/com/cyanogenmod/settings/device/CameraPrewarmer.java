@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.content.ComponentName;
+import android.content.ContentProviderClient;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Starts the camera app's process when a twist looks likely, so the launch that follows
+ * does not pay for a cold start. This package runs as the system uid and may start any
+ * component, but only ones that do no work of their own are used: a content provider of
+ * the camera package if it has one, as acquiring it only creates the provider, otherwise
+ * a short binding to one of its services. Both can block on the camera process starting,
+ * so they run on a thread of their own and never hold up a gesture.
+ */
+public class CameraPrewarmer {
+    private static final String TAG = "CMActions-CameraPrewarm";
+
+    // Long enough to cover the twist that follows a pick up
+    private static final int SERVICE_BINDING_MS = 10 * 1000;
+
+    private final Context mContext;
+    private final CameraTargetCache mCameraTargets;
+    private final Handler mHandler;
+
+    // Only touched on the prewarm thread
+    private boolean mBound;
+
+    private final AtomicLong mProviderStarts = new AtomicLong();
+    private final AtomicLong mServiceBinds = new AtomicLong();
+    private final AtomicLong mUnavailable = new AtomicLong();
+
+    public CameraPrewarmer(Context context, CameraTargetCache cameraTargets) {
+        mContext = context;
+        mCameraTargets = cameraTargets;
+
+        HandlerThread thread = new HandlerThread("CMActions-CameraPrewarm",
+                Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    // Returns immediately, the caller rate limits
+    public void prewarm() {
+        mHandler.post(mPrewarm);
+    }
+
+    private final Runnable mPrewarm = new Runnable() {
+        @Override
+        public void run() {
+            startCameraProcess();
+        }
+    };
+
+    private void startCameraProcess() {
+        String authority = mCameraTargets.getPrewarmAuthority();
+        if (authority != null) {
+            ContentProviderClient client =
+                    mContext.getContentResolver().acquireUnstableContentProviderClient(authority);
+            if (client != null) {
+                // The process is up once the provider was acquired, nothing to hold on to
+                client.release();
+                mProviderStarts.incrementAndGet();
+                return;
+            }
+        }
+
+        ComponentName service = mCameraTargets.getPrewarmService();
+        if (service == null || !bind(service)) {
+            mUnavailable.incrementAndGet();
+        }
+    }
+
+    private boolean bind(ComponentName service) {
+        if (mBound) {
+            // Still bound from the last prewarm, so the process is still up
+            return true;
+        }
+
+        Intent intent = new Intent();
+        intent.setComponent(service);
+        try {
+            if (!mContext.bindService(intent, mConnection, Context.BIND_AUTO_CREATE)) {
+                mContext.unbindService(mConnection);
+                return false;
+            }
+        } catch (SecurityException e) {
+            Log.w(TAG, "Failed to bind " + service.flattenToShortString(), e);
+            return false;
+        }
+
+        mBound = true;
+        mServiceBinds.incrementAndGet();
+        mHandler.postDelayed(mUnbind, SERVICE_BINDING_MS);
+        return true;
+    }
+
+    private final Runnable mUnbind = new Runnable() {
+        @Override
+        public void run() {
+            if (mBound) {
+                mContext.unbindService(mConnection);
+                mBound = false;
+            }
+        }
+    };
+
+    private final ServiceConnection mConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+        }
+    };
+
+    public void dump(MetricsWriter writer) {
+        writer.value("camera_prewarm.provider_starts", mProviderStarts.get());
+        writer.value("camera_prewarm.service_binds", mServiceBinds.get());
+        writer.value("camera_prewarm.unavailable", mUnavailable.get());
+    }
+}
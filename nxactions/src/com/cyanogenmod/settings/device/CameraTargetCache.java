@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ProviderInfo;
+import android.content.pm.ResolveInfo;
+import android.content.pm.ServiceInfo;
+import android.os.AsyncTask;
+import android.provider.MediaStore;
+import android.util.Log;
+
+/**
+ * Resolved camera launch intents, so a twist does not have to ask PackageManager what to
+ * start. The targets are resolved in the background and resolved again whenever a package
+ * is added, removed, changed or replaced. There is no broadcast for a new default camera,
+ * so callers report a cached target that failed to launch with onLaunchFailed(), and the
+ * next lookup resolves it again.
+ */
+public class CameraTargetCache {
+    private static final String TAG = "CMActions-CameraTargets";
+
+    // Immutable, replaced as a whole; an intent is null when nothing can handle it, the
+    // prewarm components are null when the camera package has none
+    private static class Targets {
+        final Intent mNormalIntent;
+        final Intent mSecureIntent;
+        final String mPrewarmAuthority;
+        final ComponentName mPrewarmService;
+
+        Targets(Intent normalIntent, Intent secureIntent, String prewarmAuthority,
+                ComponentName prewarmService) {
+            mNormalIntent = normalIntent;
+            mSecureIntent = secureIntent;
+            mPrewarmAuthority = prewarmAuthority;
+            mPrewarmService = prewarmService;
+        }
+    }
+
+    private final Context mContext;
+    private final PackageManager mPackageManager;
+
+    private volatile Targets mTargets;
+    // Bumped on every invalidation so a resolve that raced with one is not cached
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mInvalidations = new AtomicLong();
+    private final AtomicLong mLaunchFailures = new AtomicLong();
+
+    public CameraTargetCache(Context context) {
+        mContext = context;
+        mPackageManager = context.getPackageManager();
+
+        IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addDataScheme("package");
+        context.registerReceiver(mInvalidateReceiver, packageFilter);
+
+        refreshAsync();
+    }
+
+    // Intent to launch the camera with, or null if no camera activity exists
+    public Intent getNormalIntent() {
+        Intent intent = getTargets().mNormalIntent;
+        return intent != null ? new Intent(intent) : null;
+    }
+
+    // Intent for the secure camera of the default camera's package, or null if none
+    public Intent getSecureIntent() {
+        Intent intent = getTargets().mSecureIntent;
+        return intent != null ? new Intent(intent) : null;
+    }
+
+    // Authority of a content provider in the camera package, to start its process with
+    public String getPrewarmAuthority() {
+        return getTargets().mPrewarmAuthority;
+    }
+
+    // Service in the camera package to start its process with, if it has no provider
+    public ComponentName getPrewarmService() {
+        return getTargets().mPrewarmService;
+    }
+
+    // Drops the cached targets without resolving them again right away, the caller's
+    // next lookup does that
+    public void onLaunchFailed() {
+        synchronized (this) {
+            mGeneration.incrementAndGet();
+            mTargets = null;
+        }
+        mLaunchFailures.incrementAndGet();
+    }
+
+    public void dump(MetricsWriter writer) {
+        writer.value("camera_targets.hits", mHits.get());
+        writer.value("camera_targets.misses", mMisses.get());
+        writer.value("camera_targets.invalidations", mInvalidations.get());
+        writer.value("camera_targets.launch_failures", mLaunchFailures.get());
+        writer.value("camera_targets.cached", mTargets != null);
+    }
+
+    private Targets getTargets() {
+        Targets targets = mTargets;
+        if (targets != null) {
+            mHits.incrementAndGet();
+            return targets;
+        }
+
+        mMisses.incrementAndGet();
+        return resolve();
+    }
+
+    private void refreshAsync() {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                resolve();
+            }
+        });
+    }
+
+    private Targets resolve() {
+        int generation = mGeneration.get();
+
+        Intent normalIntent = createIntent(MediaStore.INTENT_ACTION_STILL_IMAGE_CAMERA);
+        ActivityInfo normalActivity = getBestActivityInfo(normalIntent);
+        if (normalActivity == null) {
+            normalIntent = null;
+        }
+
+        // Keyguard won't allow a picker, try to pick the secure intent in the package
+        // that would be the one used for a default action of launching the camera
+        Intent secureIntent = createIntent(MediaStore.INTENT_ACTION_STILL_IMAGE_CAMERA_SECURE);
+        ActivityInfo secureActivity = getBestActivityInfo(secureIntent, normalActivity);
+        if (secureActivity != null) {
+            secureIntent.setComponent(new ComponentName(
+                    secureActivity.applicationInfo.packageName, secureActivity.name));
+        } else {
+            secureIntent = null;
+        }
+
+        // Without a default camera the normal intent resolves to the system's chooser
+        String cameraPackage = null;
+        if (normalActivity != null && !"android".equals(normalActivity.packageName)) {
+            cameraPackage = normalActivity.packageName;
+        } else if (secureActivity != null) {
+            cameraPackage = secureActivity.packageName;
+        }
+
+        String prewarmAuthority = null;
+        ComponentName prewarmService = null;
+        if (cameraPackage != null) {
+            try {
+                PackageInfo info = mPackageManager.getPackageInfo(cameraPackage,
+                        PackageManager.GET_PROVIDERS | PackageManager.GET_SERVICES);
+                prewarmAuthority = getPrewarmAuthority(info.providers);
+                if (prewarmAuthority == null) {
+                    prewarmService = getPrewarmService(info.services);
+                }
+            } catch (PackageManager.NameNotFoundException e) {
+                Log.w(TAG, "Camera package " + cameraPackage + " went away");
+            }
+        }
+
+        Targets targets = new Targets(normalIntent, secureIntent, prewarmAuthority,
+                prewarmService);
+        synchronized (this) {
+            if (mGeneration.get() == generation) {
+                mTargets = targets;
+            }
+        }
+        return targets;
+    }
+
+    private void invalidate() {
+        synchronized (this) {
+            mGeneration.incrementAndGet();
+            mTargets = null;
+        }
+        mInvalidations.incrementAndGet();
+        refreshAsync();
+    }
+
+    private static String getPrewarmAuthority(ProviderInfo[] providers) {
+        if (providers != null) {
+            for (ProviderInfo provider : providers) {
+                if (provider.enabled && provider.authority != null) {
+                    // Several authorities are separated by semicolons
+                    return provider.authority.split(";")[0];
+                }
+            }
+        }
+        return null;
+    }
+
+    private static ComponentName getPrewarmService(ServiceInfo[] services) {
+        if (services != null) {
+            for (ServiceInfo service : services) {
+                if (service.enabled) {
+                    return new ComponentName(service.packageName, service.name);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Intent createIntent(String intentName) {
+        Intent intent = new Intent(intentName);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        intent.addFlags(Intent.FLAG_FROM_BACKGROUND);
+        return intent;
+    }
+
+    private ActivityInfo getBestActivityInfo(Intent intent) {
+        ResolveInfo resolveInfo = mPackageManager.resolveActivity(intent, 0);
+        if (resolveInfo != null) {
+            return resolveInfo.activityInfo;
+        } else {
+            // If the resolving failed, just find our own best match
+            return getBestActivityInfo(intent, null);
+        }
+    }
+
+    private ActivityInfo getBestActivityInfo(Intent intent, ActivityInfo match) {
+        List <ResolveInfo> activities = mPackageManager.queryIntentActivities(intent, 0);
+        ActivityInfo best = null;
+        if (activities.size() > 0) {
+            best = activities.get(0).activityInfo;
+            if (match != null) {
+                String packageName = match.applicationInfo.packageName;
+                for (int i = activities.size()-1; i >= 0; i--) {
+                    ActivityInfo activityInfo = activities.get(i).activityInfo;
+                    if (packageName.equals(activityInfo.applicationInfo.packageName)) {
+                        best = activityInfo;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private final BroadcastReceiver mInvalidateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Log.d(TAG, "Invalidating on " + intent.getAction());
+            invalidate();
+        }
+    };
+}
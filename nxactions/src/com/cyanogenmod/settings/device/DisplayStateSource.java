@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.os.Handler;
+import android.util.Log;
+import android.view.Display;
+
+/**
+ * Reports the power state of the default display (Display.STATE_*) as soon as the
+ * display manager changes it. Unlike the screen on/off broadcasts this does not go
+ * through the broadcast queue and tells dozing apart from fully off.
+ *
+ * The initial state is reported on the handler too, so it can never overtake a change
+ * reported before it.
+ */
+public class DisplayStateSource implements DisplayManager.DisplayListener {
+    private static final String TAG = "CMActions-DisplayState";
+
+    public interface Listener {
+        void displayStateChanged(int state);
+    }
+
+    private final DisplayManager mDisplayManager;
+    private final Listener mListener;
+
+    private int mState;
+
+    public DisplayStateSource(Context context, Handler handler, Listener listener) {
+        mDisplayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+        mListener = listener;
+        // Listen first so a change racing with the initial read is not lost
+        mDisplayManager.registerDisplayListener(this, handler);
+        int state = readState();
+        synchronized (this) {
+            mState = state;
+        }
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                mListener.displayStateChanged(getState());
+            }
+        });
+    }
+
+    public synchronized int getState() {
+        return mState;
+    }
+
+    @Override
+    public void onDisplayAdded(int displayId) {
+    }
+
+    @Override
+    public void onDisplayRemoved(int displayId) {
+    }
+
+    @Override
+    public void onDisplayChanged(int displayId) {
+        if (displayId != Display.DEFAULT_DISPLAY) {
+            return;
+        }
+
+        int state = readState();
+        synchronized (this) {
+            if (state == mState) {
+                return;
+            }
+            mState = state;
+        }
+
+        Log.d(TAG, "Display state " + state);
+        mListener.displayStateChanged(state);
+    }
+
+    private int readState() {
+        Display display = mDisplayManager.getDisplay(Display.DEFAULT_DISPLAY);
+        int state = display != null ? display.getState() : Display.STATE_UNKNOWN;
+        // Treat an unknown state as on, so nothing is armed that should not be
+        return state == Display.STATE_UNKNOWN ? Display.STATE_ON : state;
+    }
+}
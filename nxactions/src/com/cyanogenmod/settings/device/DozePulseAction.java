@@ -16,48 +16,59 @@
 
 package com.cyanogenmod.settings.device;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import android.content.Context;
 import android.content.Intent;
-import android.util.Log;
+import android.os.SystemClock;
 
 public class DozePulseAction implements SensorAction, ScreenStateNotifier {
     private static final String TAG = "CMActions";
 
-    private static final int DELAY_BETWEEN_DOZES_IN_MS = 1500;
+    // Pulses are rate limited by their ActionDispatcher channel, this only keeps the
+    // display from pulsing right after it was turned off
+    public static final int DELAY_BETWEEN_DOZES_IN_MS = 1500;
 
     private Context mContext;
 
-    private long mLastDoze;
+    private volatile long mScreenOffMs;
+
+    private final AtomicLong mAllowed = new AtomicLong();
+    private final AtomicLong mDenied = new AtomicLong();
 
     public DozePulseAction(Context context) {
         mContext = context;
     }
 
+    @Override
+    public int getArmedDisplayStates() {
+        return DISPLAY_NOT_ON;
+    }
+
     @Override
     public void screenTurnedOn() {
     }
 
     @Override
     public void screenTurnedOff() {
-        mLastDoze = System.currentTimeMillis();
+        mScreenOffMs = SystemClock.elapsedRealtime();
     }
 
-    public void action() {
-         if (mayDoze()) {
-            Log.d(TAG, "Sending doze.pulse intent");
+    public boolean action() {
+        if (SystemClock.elapsedRealtime() - mScreenOffMs > DELAY_BETWEEN_DOZES_IN_MS) {
+            ActionsLog.d(TAG, "Sending doze.pulse intent");
+            mAllowed.incrementAndGet();
             mContext.sendBroadcast(new Intent("com.android.systemui.doze.pulse"));
-        }
-    }
-
-    public synchronized boolean mayDoze() {
-        long now = System.currentTimeMillis();
-        if (now - mLastDoze > DELAY_BETWEEN_DOZES_IN_MS) {
-            Log.d(TAG, "Allowing doze");
-            mLastDoze = now;
             return true;
         } else {
-            Log.d(TAG, "Denying doze");
+            ActionsLog.d(TAG, "Denying doze");
+            mDenied.incrementAndGet();
             return false;
         }
     }
+
+    public void dump(MetricsWriter writer) {
+        writer.value("doze.fired", mAllowed.get());
+        writer.value("doze.suppressed", mDenied.get());
+    }
 }
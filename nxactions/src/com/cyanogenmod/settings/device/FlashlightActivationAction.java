@@ -16,54 +16,92 @@
 
 package com.cyanogenmod.settings.device;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.hardware.TorchManager;
+import android.os.SystemProperties;
 import android.os.Vibrator;
-import android.preference.PreferenceManager;
 import android.util.Log;
 
 public class FlashlightActivationAction implements SensorAction {
     private static final String TAG = "CMActions";
 
-    private static final String GESTURE_FLASHLIGHT_KEY = "gesture_flashlight";
+    // Chop chops whose event timestamps are closer than this count as one gesture
+    private static final String DUPLICATE_WINDOW_PROPERTY = "persist.cmactions.torch_window_ms";
+    private static final int DEFAULT_DUPLICATE_WINDOW_MS = 500;
 
     private final TorchManager mTorchManager;
     private final Vibrator mVibrator;
+    private final int mDuplicateWindowMs;
+
+    // The state last asked for, resynchronised by the torch callbacks, so the toggle
+    // never has to ask the service and two quick chops never ask for the same state
+    private volatile boolean mTorchOn;
 
     private Context mContext;
+    private GesturePreferences mPreferences;
 
-    private boolean mGestureFlashlightEnabled = true;
+    private final AtomicLong mFired = new AtomicLong();
+    private final AtomicLong mSuppressed = new AtomicLong();
+    private final AtomicLong mTorchErrors = new AtomicLong();
 
-    public FlashlightActivationAction(Context context) {
+    public FlashlightActivationAction(Context context, GesturePreferences preferences) {
         mContext = context;
+        mPreferences = preferences;
         mTorchManager = (TorchManager) context.getSystemService(Context.TORCH_SERVICE);
         mVibrator = (Vibrator) context.getSystemService(Context.VIBRATOR_SERVICE);
+        mDuplicateWindowMs = SystemProperties.getInt(DUPLICATE_WINDOW_PROPERTY,
+                DEFAULT_DUPLICATE_WINDOW_MS);
+
+        mTorchManager.addListener(mTorchCallback);
+        mTorchOn = mTorchManager.isTorchOn();
+    }
 
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
-        loadPreferences(sharedPrefs);
-        sharedPrefs.registerOnSharedPreferenceChangeListener(mPrefListener);
+    public int getDuplicateWindowMs() {
+        return mDuplicateWindowMs;
     }
 
     @Override
-    public void action() {
-        if (mGestureFlashlightEnabled) {
+    public boolean action() {
+        if (mPreferences.getSnapshot().isFlashlightEnabled()) {
+            mFired.incrementAndGet();
+            // Set rather than toggle the state we last saw, and light the torch before
+            // asking for the haptic that confirms it
+            boolean on = !mTorchOn;
+            mTorchOn = on;
+            mTorchManager.setTorchEnabled(on);
             mVibrator.vibrate(250);
-            mTorchManager.toggleTorch();
+            return true;
+        } else {
+            mSuppressed.incrementAndGet();
+            return false;
         }
     }
 
-    private void loadPreferences(SharedPreferences sharedPreferences) {
-        mGestureFlashlightEnabled = sharedPreferences.getBoolean(GESTURE_FLASHLIGHT_KEY, true);
-    }
+    private final TorchManager.TorchCallback mTorchCallback = new TorchManager.TorchCallback() {
+        @Override
+        public void onTorchStateChanged(boolean on) {
+            mTorchOn = on;
+        }
+
+        @Override
+        public void onTorchError() {
+            Log.w(TAG, "Torch error");
+            mTorchErrors.incrementAndGet();
+            mTorchOn = false;
+        }
 
-    private SharedPreferences.OnSharedPreferenceChangeListener mPrefListener =
-            new SharedPreferences.OnSharedPreferenceChangeListener() {
         @Override
-        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-            if (GESTURE_FLASHLIGHT_KEY.equals(key)) {
-                mGestureFlashlightEnabled = sharedPreferences.getBoolean(GESTURE_FLASHLIGHT_KEY, true);
-            } 
+        public void onTorchAvailabilityChanged(boolean available) {
         }
     };
+
+    public void dump(MetricsWriter writer) {
+        writer.value("flashlight.fired", mFired.get());
+        writer.value("flashlight.suppressed", mSuppressed.get());
+        writer.value("flashlight.torch_on", mTorchOn);
+        writer.value("flashlight.torch_errors", mTorchErrors.get());
+        writer.value("flashlight.duplicate_window_ms", mDuplicateWindowMs);
+    }
 }
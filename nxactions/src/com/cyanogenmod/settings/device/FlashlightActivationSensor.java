@@ -30,40 +30,38 @@ import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
+import android.os.SystemClock;
 import android.provider.MediaStore;
-import android.util.Log;
 
-public class FlashlightActivationSensor implements ScreenStateNotifier, SensorEventListener {
+public class FlashlightActivationSensor implements ArmingReconciler.Feature, SensorEventListener {
     private static final String TAG = "CMActions-FlashlightSensor";
 
-    private SensorHelper mSensorHelper;
-    private SensorAction mSensorAction;
+    private GesturePreferences mPreferences;
+    private ActionDispatcher.Channel mAction;
 
     private Sensor mChopChopSensor;
 
     private Context mContext;
 
-    public FlashlightActivationSensor(SensorHelper sensorHelper, SensorAction sensorAction) {
-        mSensorHelper = sensorHelper;
-        mSensorAction = sensorAction;
+    public FlashlightActivationSensor(GesturePreferences preferences, SensorHelper sensorHelper,
+            ActionDispatcher.Channel action) {
+        mPreferences = preferences;
+        mAction = action;
         mChopChopSensor = sensorHelper.getChopChopSensor();
-
-        Log.d(TAG, "Enabling");
-        mSensorHelper.registerListener(mChopChopSensor, this);
-    }
-
-    @Override
-    public void screenTurnedOn() {
     }
 
     @Override
-    public void screenTurnedOff() {
+    public void addArming(ArmingReconciler.Conditions conditions, ArmingReconciler.Arming arming) {
+        if (mPreferences.getSnapshot().isFlashlightEnabled()) {
+            arming.register(mChopChopSensor, this);
+        }
     }
 
     @Override
     public void onSensorChanged(SensorEvent event) {
-        Log.d(TAG, "activate flashlight");
-        mSensorAction.action();
+        long callbackNs = SystemClock.elapsedRealtimeNanos();
+        ActionsLog.d(TAG, "activate flashlight");
+        mAction.dispatch(GestureLatencyTracker.GESTURE_FLASHLIGHT, event.timestamp, callbackNs);
     }
 
     @Override
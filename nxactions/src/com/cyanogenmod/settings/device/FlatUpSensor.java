@@ -16,75 +16,61 @@
 
 package com.cyanogenmod.settings.device;
 
-import android.content.Context;
-import android.content.SharedPreferences;
-import android.preference.PreferenceManager;
+import android.os.SystemClock;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
-import android.util.Log;
 
-public class FlatUpSensor implements ScreenStateNotifier {
+public class FlatUpSensor implements ArmingReconciler.Feature {
     private static final String TAG = "CMActions-FlatUpSensor";
 
-    private static final String PICK_UP_KEY = "pick_up";
-
-    private SensorHelper mSensorHelper;
-    private SensorAction mSensorAction;
+    private GesturePreferences mPreferences;
+    private ActionDispatcher.Channel mAction;
+    private ActionDispatcher.Channel mPrewarm;
 
     private final Sensor mFlatUpSensor;
     private final Sensor mStowSensor;
 
-    private boolean mIsStowed;
+    private volatile boolean mIsStowed;
     private boolean mLastFlatUp;
 
-    private Context mContext;
-
-    private boolean mPickUpEnabled = true;
-
-    public FlatUpSensor(Context context, SensorHelper sensorHelper, SensorAction action) {
-        mContext = context;
-        mSensorHelper = sensorHelper;
-        mSensorAction = action;
+    public FlatUpSensor(GesturePreferences preferences,
+            SensorHelper sensorHelper, ActionDispatcher.Channel action,
+            ActionDispatcher.Channel prewarm) {
+        mPreferences = preferences;
+        mAction = action;
+        mPrewarm = prewarm;
 
         mFlatUpSensor = sensorHelper.getFlatUpSensor();
         mStowSensor = sensorHelper.getStowSensor();
-
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
-        loadPreferences(sharedPrefs);
-        sharedPrefs.registerOnSharedPreferenceChangeListener(mPrefListener);
-    }
-
-    @Override
-    public void screenTurnedOn() {
-        Log.d(TAG, "Disabling");
-            mSensorHelper.unregisterListener(mFlatUpListener);
-            mSensorHelper.unregisterListener(mStowListener);
     }
 
     @Override
-    public void screenTurnedOff() {
-        if (mPickUpEnabled) {
-            Log.d(TAG, "Enabling");
-            mSensorHelper.registerListener(mFlatUpSensor, mFlatUpListener);
-            mSensorHelper.registerListener(mStowSensor, mStowListener);
-        } else {
-            Log.d(TAG, "Disabling");
-            mSensorHelper.unregisterListener(mFlatUpListener);
-            mSensorHelper.unregisterListener(mStowListener);
+    public void addArming(ArmingReconciler.Conditions conditions, ArmingReconciler.Arming arming) {
+        // Stays armed through doze pulses, re-arming around every pulse would cost the
+        // hub more than a redundant pulse request
+        if (mPreferences.getSnapshot().isPickUpEnabled() &&
+                conditions.isDisplayIn(ScreenStateNotifier.DISPLAY_NOT_ON)) {
+            arming.register(mFlatUpSensor, mFlatUpListener);
+            arming.register(mStowSensor, mStowListener);
         }
     }
 
     private SensorEventListener mFlatUpListener = new SensorEventListener() {
         @Override
         public synchronized void onSensorChanged(SensorEvent event) {
+            long callbackNs = SystemClock.elapsedRealtimeNanos();
             boolean thisFlatUp = (event.values[0] != 0);
 
-            Log.d(TAG, "event: " + thisFlatUp + " mLastFlatUp=" + mLastFlatUp + " mIsStowed=" +
+            ActionsLog.d(TAG, "event: %b mLastFlatUp=%b mIsStowed=%b", thisFlatUp, mLastFlatUp,
                 mIsStowed);
 
-            if (mLastFlatUp && ! thisFlatUp && !mIsStowed && mPickUpEnabled) {
-                mSensorAction.action();
+            if (mLastFlatUp && ! thisFlatUp && !mIsStowed &&
+                    mPreferences.getSnapshot().isPickUpEnabled()) {
+                mAction.dispatch(GestureLatencyTracker.GESTURE_FLAT_UP, event.timestamp,
+                    callbackNs);
+                mPrewarm.dispatch(GestureLatencyTracker.GESTURE_CAMERA_PREWARM,
+                    event.timestamp, callbackNs);
             }
             mLastFlatUp = thisFlatUp;
         }
@@ -104,18 +90,4 @@ public class FlatUpSensor implements ScreenStateNotifier {
         public void onAccuracyChanged(Sensor mSensor, int accuracy) {
         }
     };
-
-    private void loadPreferences(SharedPreferences sharedPreferences) {
-        mPickUpEnabled = sharedPreferences.getBoolean(PICK_UP_KEY, true);
-    }
-
-    private SharedPreferences.OnSharedPreferenceChangeListener mPrefListener =
-            new SharedPreferences.OnSharedPreferenceChangeListener() {
-        @Override
-        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-            if (PICK_UP_KEY.equals(key)) {
-                mPickUpEnabled = sharedPreferences.getBoolean(PICK_UP_KEY, true);
-            } 
-        }
-    };
 }
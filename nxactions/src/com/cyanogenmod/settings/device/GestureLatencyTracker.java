@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import android.os.SystemClock;
+
+/**
+ * Latency from SensorEvent.timestamp to the sensor callback ("queue") and to the moment
+ * the gesture's action finished dispatching ("total"), per gesture and screen state.
+ */
+public class GestureLatencyTracker implements ScreenStateNotifier {
+    public static final int GESTURE_CAMERA = 0;
+    public static final int GESTURE_FLASHLIGHT = 1;
+    public static final int GESTURE_FLAT_UP = 2;
+    public static final int GESTURE_STOW = 3;
+    public static final int GESTURE_IR_APPROACH = 4;
+    public static final int GESTURE_IR_SILENCE = 5;
+    public static final int GESTURE_ALARM_SNOOZE = 6;
+    public static final int GESTURE_CAMERA_PREWARM = 7;
+    private static final int GESTURE_COUNT = 8;
+
+    private static final String[] GESTURE_NAMES = {
+        "camera", "flashlight", "flat_up", "stow", "ir_approach", "ir_silence", "alarm_snooze",
+        "camera_prewarm"
+    };
+
+    private static final int SCREEN_ON = 0;
+    private static final int SCREEN_OFF = 1;
+    private static final String[] SCREEN_NAMES = { "screen_on", "screen_off" };
+
+    private final LatencyHistogram[][] mQueueLatency = new LatencyHistogram[GESTURE_COUNT][2];
+    private final LatencyHistogram[][] mTotalLatency = new LatencyHistogram[GESTURE_COUNT][2];
+
+    private volatile int mScreenState = SCREEN_ON;
+
+    public GestureLatencyTracker() {
+        for (int gesture = 0; gesture < GESTURE_COUNT; gesture++) {
+            for (int screen = 0; screen < 2; screen++) {
+                mQueueLatency[gesture][screen] = new LatencyHistogram();
+                mTotalLatency[gesture][screen] = new LatencyHistogram();
+            }
+        }
+    }
+
+    @Override
+    public int getArmedDisplayStates() {
+        return DISPLAY_NOT_ON;
+    }
+
+    @Override
+    public void screenTurnedOn() {
+        mScreenState = SCREEN_ON;
+    }
+
+    @Override
+    public void screenTurnedOff() {
+        mScreenState = SCREEN_OFF;
+    }
+
+    // Call once the gesture's action returned, callbackNs being elapsedRealtimeNanos()
+    // taken on entry to onSensorChanged.
+    public void record(int gesture, long eventTimestampNs, long callbackNs) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        int screen = mScreenState;
+        mQueueLatency[gesture][screen].record(callbackNs - eventTimestampNs);
+        mTotalLatency[gesture][screen].record(now - eventTimestampNs);
+    }
+
+    public void dump(MetricsWriter writer) {
+        writer.section("latency");
+        for (int gesture = 0; gesture < GESTURE_COUNT; gesture++) {
+            for (int screen = 0; screen < 2; screen++) {
+                if (mTotalLatency[gesture][screen].getCount() == 0) {
+                    continue;
+                }
+                String key = GESTURE_NAMES[gesture] + "." + SCREEN_NAMES[screen];
+                writer.histogram(key + ".queue", mQueueLatency[gesture][screen]);
+                writer.histogram(key + ".total", mTotalLatency[gesture][screen]);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+/**
+ * The gesture_panel preferences, read once and published as an immutable Snapshot that
+ * any thread can read without locking. A change swaps in a new snapshot and notifies
+ * only the listeners registered for the key that changed.
+ */
+public class GesturePreferences {
+    private static final String TAG = "CMActions-Preferences";
+
+    public static final String PICK_UP_KEY = "pick_up";
+    public static final String GESTURE_IR_KEY = "gesture_ir";
+    public static final String GESTURE_IR_SILENCE_KEY = "gesture_ir_silence";
+    public static final String GESTURE_CAMERA_KEY = "gesture_camera";
+    public static final String GESTURE_FLASHLIGHT_KEY = "gesture_flashlight";
+
+    private static final String[] KEYS = {
+        PICK_UP_KEY, GESTURE_IR_KEY, GESTURE_IR_SILENCE_KEY, GESTURE_CAMERA_KEY,
+        GESTURE_FLASHLIGHT_KEY
+    };
+
+    public interface Listener {
+        void onPreferenceChanged(Snapshot snapshot);
+    }
+
+    public static class Snapshot {
+        private final boolean mPickUpEnabled;
+        private final boolean mIrGestureEnabled;
+        private final boolean mIrSilenceEnabled;
+        private final boolean mCameraEnabled;
+        private final boolean mFlashlightEnabled;
+
+        Snapshot(SharedPreferences sharedPrefs) {
+            mPickUpEnabled = sharedPrefs.getBoolean(PICK_UP_KEY, true);
+            mIrGestureEnabled = sharedPrefs.getBoolean(GESTURE_IR_KEY, true);
+            mIrSilenceEnabled = sharedPrefs.getBoolean(GESTURE_IR_SILENCE_KEY, true);
+            mCameraEnabled = sharedPrefs.getBoolean(GESTURE_CAMERA_KEY, true);
+            mFlashlightEnabled = sharedPrefs.getBoolean(GESTURE_FLASHLIGHT_KEY, true);
+        }
+
+        public boolean isPickUpEnabled() {
+            return mPickUpEnabled;
+        }
+
+        public boolean isIrGestureEnabled() {
+            return mIrGestureEnabled;
+        }
+
+        // Also covers silencing alarms
+        public boolean isIrSilenceEnabled() {
+            return mIrSilenceEnabled;
+        }
+
+        public boolean isCameraEnabled() {
+            return mCameraEnabled;
+        }
+
+        public boolean isFlashlightEnabled() {
+            return mFlashlightEnabled;
+        }
+
+        @Override
+        public String toString() {
+            return "pick_up=" + mPickUpEnabled + " gesture_ir=" + mIrGestureEnabled +
+                " gesture_ir_silence=" + mIrSilenceEnabled + " gesture_camera=" + mCameraEnabled +
+                " gesture_flashlight=" + mFlashlightEnabled;
+        }
+    }
+
+    private final List<Listener>[] mListeners;
+
+    private volatile Snapshot mSnapshot;
+    private volatile long mChanges;
+
+    @SuppressWarnings("unchecked")
+    public GesturePreferences(Context context) {
+        mListeners = new List[KEYS.length];
+        for (int i = 0; i < KEYS.length; i++) {
+            mListeners[i] = new CopyOnWriteArrayList<Listener>();
+        }
+
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        mSnapshot = new Snapshot(sharedPrefs);
+        sharedPrefs.registerOnSharedPreferenceChangeListener(mPrefListener);
+    }
+
+    public Snapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    public void addListener(String key, Listener listener) {
+        int index = indexOf(key);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown preference " + key);
+        }
+        mListeners[index].add(listener);
+    }
+
+    public void dump(MetricsWriter writer) {
+        Snapshot snapshot = mSnapshot;
+        writer.section("preferences");
+        writer.value(PICK_UP_KEY, snapshot.isPickUpEnabled());
+        writer.value(GESTURE_IR_KEY, snapshot.isIrGestureEnabled());
+        writer.value(GESTURE_IR_SILENCE_KEY, snapshot.isIrSilenceEnabled());
+        writer.value(GESTURE_CAMERA_KEY, snapshot.isCameraEnabled());
+        writer.value(GESTURE_FLASHLIGHT_KEY, snapshot.isFlashlightEnabled());
+        writer.value("changes", mChanges);
+    }
+
+    private static int indexOf(String key) {
+        for (int i = 0; i < KEYS.length; i++) {
+            if (KEYS[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Held here, SharedPreferences only keeps a weak reference to its listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener mPrefListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            int index = indexOf(key);
+            if (index < 0) {
+                return;
+            }
+
+            Snapshot snapshot = new Snapshot(sharedPreferences);
+            mSnapshot = snapshot;
+            mChanges++;
+            Log.d(TAG, "Preferences changed: " + snapshot);
+
+            for (Listener listener : mListeners[index]) {
+                listener.onPreferenceChanged(snapshot);
+            }
+        }
+    };
+}
@@ -16,9 +16,26 @@
 
 package com.cyanogenmod.settings.device;
 
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.content.Context;
+import android.content.SharedPreferences;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.SystemProperties;
 import android.util.Log;
 
 public class IrGestureManager {
@@ -41,54 +58,338 @@ public class IrGestureManager {
     public static final int IR_GESTURE_HOVER_FIST                  = 10;
     public static final int IR_GESTURE_LAST                        = IR_GESTURE_HOVER_FIST;
 
-    private int mVotes[] = new int[IR_GESTURE_LAST+1];
+    // Vote count of every gesture packed into one word, VOTE_BITS per gesture
+    private static final int VOTE_BITS = 5;
+    private static final long VOTE_MASK = (1L << VOTE_BITS) - 1;
+
+    // How long deferred votes wait before reaching the hub, 0 applies them right away
+    private static final String COALESCE_WINDOW_PROPERTY = "persist.cmactions.ir_coalesce_ms";
+    private static final int DEFAULT_COALESCE_WINDOW_MS = 250;
+
+    // The tuning profiles change undocumented firmware fields, so they are opt-in. With
+    // them off the factory tuning is still restored in case an earlier run changed it.
+    private static final String TUNING_PROPERTY = "persist.cmactions.ir_tuning";
+    private static final String FACTORY_TUNING_PREFS = "ir_factory_tuning";
+
+    private final AtomicLong mVotes = new AtomicLong();
+    private final AtomicInteger mApplyRequests = new AtomicInteger();
+
+    // Deferred applies run here rather than on the sensor thread, they block in the driver
+    private final HandlerThread mApplyThread;
+    private final Handler mHandler;
+    private final AtomicBoolean mApplyScheduled = new AtomicBoolean();
+    private final int mCoalesceWindowMs;
+
+    // Only written by the thread currently applying the configuration
+    // NOT_APPLIED until the first write: the hub keeps whatever mask the previous process
+    // left, so the first apply always writes, even if it only disables IR
+    private static final int NOT_APPLIED = -1;
+    private volatile int mGestures = NOT_APPLIED;
+    private volatile long mConfigUpdates;
+    private volatile long mNativeFailures;
+    private volatile long mDeferredApplies;
+
+    // Open votes are kept strongly reachable here so their references get enqueued
+    private final Set<VoteReference> mOpenVotes = new HashSet<VoteReference>();
+    private final ReferenceQueue<IrGestureVote> mCollectedVotes =
+            new ReferenceQueue<IrGestureVote>();
+    private final AtomicInteger mLeakedVotes = new AtomicInteger();
+    private boolean mLeakCheckScheduled;
+
+    // Leases collected by the GC are looked for this often while any is open, so a leaked
+    // one does not keep its gestures on the hub until some unrelated vote comes along
+    private static final int LEAK_CHECK_INTERVAL_MS = 60 * 1000;
+
+    // View of the native pending config and the factory tuning it started with
+    private ByteBuffer mIrConfig;
+    private ByteBuffer mFactoryIrConfig;
+    private volatile IrTuningProfile mTuningProfile = IrTuningProfile.DEFAULT;
+    private final boolean mTuningEnabled;
+    private final SharedPreferences mFactoryTuning;
+
+    private static final String NATIVE_LIBRARY = "jni_NXActions";
+    private static volatile boolean sNativeLoaded;
+
+    // Nothing native happens here, the library is loaded and the hub configured by the
+    // first apply
+    public IrGestureManager(Context context) {
+        mApplyThread = new HandlerThread("CMActions-IR", Process.THREAD_PRIORITY_BACKGROUND);
+        mApplyThread.start();
+        mHandler = new Handler(mApplyThread.getLooper());
+        mCoalesceWindowMs = SystemProperties.getInt(COALESCE_WINDOW_PROPERTY,
+                DEFAULT_COALESCE_WINDOW_MS);
+        mTuningEnabled = SystemProperties.getBoolean(TUNING_PROPERTY, false);
+        mFactoryTuning = context.getSharedPreferences(FACTORY_TUNING_PREFS, Context.MODE_PRIVATE);
+    }
+
+    private static void ensureNativeLoaded() {
+        if (sNativeLoaded) {
+            return;
+        }
+        synchronized (IrGestureManager.class) {
+            if (!sNativeLoaded) {
+                long startNs = SystemClock.elapsedRealtimeNanos();
+                System.loadLibrary(NATIVE_LIBRARY);
+                sNativeLoaded = true;
+                Log.d(TAG, "Loaded " + NATIVE_LIBRARY + " in " +
+                    (SystemClock.elapsedRealtimeNanos() - startNs) / 1000 + "us");
+            }
+        }
+    }
+
+    public IrGestureVote openVote(String tag) {
+        releaseLeakedVotes();
+
+        VoteState state = new VoteState(tag);
+        IrGestureVote vote = new IrGestureVote(this, state);
+        state.mReference = new VoteReference(vote, state, mCollectedVotes);
+        synchronized (mOpenVotes) {
+            mOpenVotes.add(state.mReference);
+            if (!mLeakCheckScheduled) {
+                mLeakCheckScheduled = true;
+                mHandler.postDelayed(mLeakCheck, LEAK_CHECK_INTERVAL_MS);
+            }
+        }
+        return vote;
+    }
 
-    private int mGestures;
+    private final Runnable mLeakCheck = new Runnable() {
+        @Override
+        public void run() {
+            releaseLeakedVotes();
+            synchronized (mOpenVotes) {
+                mLeakCheckScheduled = !mOpenVotes.isEmpty();
+                if (mLeakCheckScheduled) {
+                    mHandler.postDelayed(mLeakCheck, LEAK_CHECK_INTERVAL_MS);
+                }
+            }
+        }
+    };
 
-    static
-    {
-       System.load("/system/lib/libjni_NXActions.so");
+    void onVoteClosed(VoteState state) {
+        synchronized (mOpenVotes) {
+            mOpenVotes.remove(state.mReference);
+        }
+        state.mReference.clear();
     }
 
-    public IrGestureManager() {
-        nativeSetIrDisabled(true);
+    // Withdraws the votes of every lease that was collected without being closed
+    private void releaseLeakedVotes() {
+        VoteReference reference;
+        while ((reference = (VoteReference) mCollectedVotes.poll()) != null) {
+            synchronized (mOpenVotes) {
+                mOpenVotes.remove(reference);
+            }
+            VoteState state = reference.mState;
+            if (!state.mClosed) {
+                Log.w(TAG, "Leaked IR gesture vote " + state.mTag + " holding 0x" +
+                    Integer.toHexString(state.mFlags));
+                mLeakedVotes.incrementAndGet();
+                state.mClosed = true;
+                vote(state.mFlags, 0);
+                applyLatest();
+            }
+        }
     }
 
-    public synchronized void updateState(int oldFlags, int newFlags) {
-        voteDelta(oldFlags, -1);
-        int gestures = voteDelta(newFlags, +1);
+    // Applies the vote, and any deferred votes, without waiting for a coalescing window:
+    // on this thread, or by the thread already applying, which does not stop before it
+    // has pushed the latest mask. The hardware may therefore not be updated yet on return.
+    public void updateState(int oldFlags, int newFlags) {
+        releaseLeakedVotes();
+        vote(oldFlags, newFlags);
+        applyLatest();
+    }
 
-        updateSensorConfig(gestures);
+    // Records the vote but only pushes the resulting mask to the hardware once the
+    // coalescing window has passed, so rapid on/off flapping costs one reconfiguration.
+    public void updateStateDeferred(int oldFlags, int newFlags) {
+        releaseLeakedVotes();
+        vote(oldFlags, newFlags);
+
+        int windowMs = mCoalesceWindowMs;
+        if (windowMs <= 0) {
+            applyLatest();
+        } else if (mApplyScheduled.compareAndSet(false, true)) {
+            mDeferredApplies++;
+            mHandler.postDelayed(mDeferredApply, windowMs);
+        }
     }
 
-    private synchronized int voteDelta(int flags, int delta) {
+    public void flush() {
+        applyLatest();
+    }
+
+    private void vote(int oldFlags, int newFlags) {
+        long votes;
+        long newVotes;
+        do {
+            votes = mVotes.get();
+            newVotes = voteDelta(voteDelta(votes, newFlags, +1), oldFlags, -1);
+        } while (!mVotes.compareAndSet(votes, newVotes));
+    }
+
+    private final Runnable mDeferredApply = new Runnable() {
+        @Override
+        public void run() {
+            mApplyScheduled.set(false);
+            applyLatest();
+        }
+    };
+
+    private static long voteDelta(long votes, int flags, int delta) {
+        while (flags != 0) {
+            int gesture = Integer.numberOfTrailingZeros(flags);
+            flags &= flags - 1;
+
+            int shift = gesture * VOTE_BITS;
+            long count = ((votes >>> shift) & VOTE_MASK) + delta;
+            if (count < 0 || count > VOTE_MASK) {
+                throw new IllegalStateException("Vote count for IR gesture " + gesture +
+                    " out of range: " + count);
+            }
+            votes = (votes & ~(VOTE_MASK << shift)) | (count << shift);
+        }
+        return votes;
+    }
+
+    private static int getGestures(long votes) {
         int gestures = 0;
         for (int i = 0; i <= IR_GESTURE_LAST; i++) {
-            if ((flags & (1<<i)) != 0) {
-                mVotes[i] += delta;
-            }
-            if (mVotes[i] > 0) {
+            if (((votes >>> (i * VOTE_BITS)) & VOTE_MASK) != 0) {
                 gestures |= (1 << i);
             }
         }
-
         return gestures;
     }
 
-    private synchronized void updateSensorConfig(int gestures) {
+    // Whoever finds no apply in progress keeps applying until no vote arrived meanwhile,
+    // everyone else just bumps the request count. The hardware therefore always ends up
+    // with the latest mask, and voters never wait for each other. If applying throws, the
+    // count is reset so the next vote starts over instead of being dropped for good.
+    private void applyLatest() {
+        if (mApplyRequests.getAndIncrement() != 0) {
+            return;
+        }
+
+        boolean drained = false;
+        try {
+            int missed = 1;
+            do {
+                updateSensorConfig(getGestures(mVotes.get()));
+                missed = mApplyRequests.addAndGet(-missed);
+            } while (missed != 0);
+            drained = true;
+        } finally {
+            if (!drained) {
+                mApplyRequests.set(0);
+            }
+        }
+    }
+
+    private void updateSensorConfig(int gestures) {
         if (mGestures != gestures) {
             boolean irDisabled = (gestures == 0);
-            mGestures = gestures;
 
-            if (!nativeSetIrDisabled(irDisabled)) {
-                Log.e(TAG, "Failed setting IR disabled " + irDisabled);
+            ensureNativeLoaded();
+            applyTuningProfile(mTuningEnabled ? IrTuningProfile.forGestures(gestures) :
+                IrTuningProfile.DEFAULT);
+
+            mConfigUpdates++;
+            // Only recorded once written, so a failed or throwing write is retried by the
+            // next apply
+            if (nativeSetIrConfig(irDisabled, gestures)) {
+                mGestures = gestures;
+            } else {
+                Log.e(TAG, "Failed setting IR disabled " + irDisabled + " gestures " + gestures);
+                mNativeFailures++;
             }
-            if (!nativeSetIrWakeConfig(mGestures)) {
-                Log.e(TAG, "Failed setting IR gestures " + mGestures);
+        }
+    }
+
+    private void applyTuningProfile(IrTuningProfile profile) {
+        if (mIrConfig == null) {
+            ByteBuffer config = nativeGetIrConfigBuffer();
+            if (config == null || config.capacity() != IrTuningProfile.CONFIG_SIZE) {
+                Log.e(TAG, "IR config not available, keeping factory tuning");
+                return;
             }
+            mIrConfig = config.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        // Only re-read when the hub comes back with another tuning number, the live values
+        // are otherwise the last profile applied and not the factory ones
+        if (mFactoryIrConfig == null ||
+                !IrTuningProfile.isSameTuning(mIrConfig, mFactoryIrConfig)) {
+            ByteBuffer factory = IrTuningProfile.copyOf(mIrConfig);
+            IrTuningProfile.loadFactoryValues(factory, mFactoryTuning);
+            mFactoryIrConfig = factory;
+        }
+
+        profile.applyTo(mIrConfig, mFactoryIrConfig);
+        mTuningProfile = profile;
+    }
+
+    public void dump(MetricsWriter writer) {
+        releaseLeakedVotes();
+
+        writer.section("ir");
+        synchronized (mOpenVotes) {
+            writer.value("open_votes", mOpenVotes.size());
+        }
+        writer.value("leaked_votes", mLeakedVotes.get());
+        int gestures = mGestures;
+        writer.value("wake_mask", gestures == NOT_APPLIED ? "not_applied" :
+            "0x" + Integer.toHexString(gestures));
+        writer.value("tuning_enabled", mTuningEnabled);
+        writer.value("tuning_profile", mTuningProfile.getName());
+        long votes = mVotes.get();
+        for (int i = 0; i <= IR_GESTURE_LAST; i++) {
+            long count = (votes >>> (i * VOTE_BITS)) & VOTE_MASK;
+            if (count != 0) {
+                writer.value("votes." + i, count);
+            }
+        }
+        writer.value("coalesce_window_ms", mCoalesceWindowMs);
+        writer.value("deferred_applies", mDeferredApplies);
+        writer.value("config_updates", mConfigUpdates);
+        writer.value("native_failures", mNativeFailures);
+
+        writer.value("native_loaded", sNativeLoaded);
+        if (!sNativeLoaded) {
+            return;
+        }
+
+        int[] ioStats = new int[4];
+        nativeGetIoStats(ioStats);
+        writer.value("device_opens", ioStats[0]);
+        writer.value("ioctls", ioStats[1]);
+        writer.value("skipped_writes", ioStats[2]);
+        writer.value("ioctl_failures", ioStats[3]);
+    }
+
+    // State of an IrGestureVote that outlives it, so leaked votes can still be withdrawn
+    static class VoteState {
+        final String mTag;
+        VoteReference mReference;
+        volatile int mFlags;
+        volatile boolean mClosed;
+
+        VoteState(String tag) {
+            mTag = tag;
+        }
+    }
+
+    private static class VoteReference extends PhantomReference<IrGestureVote> {
+        final VoteState mState;
+
+        VoteReference(IrGestureVote vote, VoteState state, ReferenceQueue<IrGestureVote> queue) {
+            super(vote, queue);
+            mState = state;
         }
     }
 
-    private final native boolean nativeSetIrDisabled(boolean disabled);
-    private final native boolean nativeSetIrWakeConfig(int wakeConfig);
+    private final native boolean nativeSetIrConfig(boolean disabled, int wakeConfig);
+    private final native ByteBuffer nativeGetIrConfigBuffer();
+    private final native void nativeGetIoStats(int[] stats);
 }
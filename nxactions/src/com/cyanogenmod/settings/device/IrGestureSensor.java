@@ -16,92 +16,54 @@
 
 package com.cyanogenmod.settings.device;
 
-import android.content.Context;
-import android.content.SharedPreferences;
-import android.preference.PreferenceManager;
+import android.os.SystemClock;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
-import android.util.Log;
 
 import static com.cyanogenmod.settings.device.IrGestureManager.*;
 
-public class IrGestureSensor implements ScreenStateNotifier, SensorEventListener {
+public class IrGestureSensor implements ArmingReconciler.Feature, SensorEventListener {
     private static final String TAG = "CMActions-IRGestureSensor";
 
     private static final int IR_GESTURES_FOR_SCREEN_OFF = (1 << IR_GESTURE_APPROACH);
-    private static final String GESTURE_IR_KEY = "gesture_ir";
 
-    private SensorHelper mSensorHelper;
-    private SensorAction mSensorAction;
-    private IrGestureVote mIrGestureVote;
+    private ActionDispatcher.Channel mAction;
+    private GesturePreferences mPreferences;
     private Sensor mSensor;
 
-    private Context mContext;
-
-    private boolean mGestureIrEnabled = true;
-
-    public IrGestureSensor(Context context, SensorHelper sensorHelper, SensorAction action,
-                                IrGestureManager irGestureManager) {
-        mContext = context;
-        mSensorHelper = sensorHelper;
-        mSensorAction = action;
-        mIrGestureVote = new IrGestureVote(irGestureManager);
+    public IrGestureSensor(GesturePreferences preferences,
+                                SensorHelper sensorHelper, ActionDispatcher.Channel action) {
+        mAction = action;
+        mPreferences = preferences;
 
         mSensor = sensorHelper.getIrGestureSensor();
-        mIrGestureVote.voteForSensors(0);
-
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
-        loadPreferences(sharedPrefs);
-        sharedPrefs.registerOnSharedPreferenceChangeListener(mPrefListener);
-    }
-
-    @Override
-    public void screenTurnedOn() {
-        Log.d(TAG, "Disabling");
-        mSensorHelper.unregisterListener(this);
-        mIrGestureVote.voteForSensors(0);
     }
 
     @Override
-    public void screenTurnedOff() {
-        if (mGestureIrEnabled) {
-            Log.d(TAG, "Enabling");
-            mSensorHelper.registerListener(mSensor, this);
-            mIrGestureVote.voteForSensors(IR_GESTURES_FOR_SCREEN_OFF);
-        } else {
-            Log.d(TAG, "Disabling");
-            mSensorHelper.unregisterListener(this);
-            mIrGestureVote.voteForSensors(0);
+    public void addArming(ArmingReconciler.Conditions conditions, ArmingReconciler.Arming arming) {
+        // Stays armed through doze pulses, see FlatUpSensor
+        if (mPreferences.getSnapshot().isIrGestureEnabled() &&
+                conditions.isDisplayIn(ScreenStateNotifier.DISPLAY_NOT_ON)) {
+            arming.register(mSensor, this);
+            arming.enableIrGestures(IR_GESTURES_FOR_SCREEN_OFF);
         }
     }
 
     @Override
     public void onSensorChanged(SensorEvent event) {
+        long callbackNs = SystemClock.elapsedRealtimeNanos();
         int gesture = (int) event.values[1];
 
-        if ((gesture == IR_GESTURE_APPROACH) && mGestureIrEnabled) {
-            Log.d(TAG, "event: [" + event.values.length + "]: " + event.values[0] + ", " +
-                event.values[1] + ", " + event.values[2]);
-            mSensorAction.action();
+        if ((gesture == IR_GESTURE_APPROACH) && mPreferences.getSnapshot().isIrGestureEnabled()) {
+            ActionsLog.d(TAG, "event: %f, %f, %f", event.values[0], event.values[1],
+                event.values[2]);
+            mAction.dispatch(GestureLatencyTracker.GESTURE_IR_APPROACH, event.timestamp,
+                callbackNs);
         }
     }
 
     @Override
     public void onAccuracyChanged(Sensor mSensor, int accuracy) {
     }
-
-    private void loadPreferences(SharedPreferences sharedPreferences) {
-        mGestureIrEnabled = sharedPreferences.getBoolean(GESTURE_IR_KEY, true);
-    }
-
-    private SharedPreferences.OnSharedPreferenceChangeListener mPrefListener =
-            new SharedPreferences.OnSharedPreferenceChangeListener() {
-        @Override
-        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-            if (GESTURE_IR_KEY.equals(key)) {
-                mGestureIrEnabled = sharedPreferences.getBoolean(GESTURE_IR_KEY, true);
-            } 
-        }
-    };
 }
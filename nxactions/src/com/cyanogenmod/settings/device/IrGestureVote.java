@@ -16,21 +16,47 @@
 
 package com.cyanogenmod.settings.device;
 
-public class IrGestureVote {
-    private IrGestureManager mIrGestureManager;
+import java.io.Closeable;
 
-    private int mLastFlags;
+/**
+ * A lease on IR gestures, opened with IrGestureManager.openVote(). Closing it withdraws
+ * its votes. A vote that is garbage collected without being closed is reported as a
+ * leak and withdrawn by the manager.
+ */
+public class IrGestureVote implements Closeable {
+    private final IrGestureManager mIrGestureManager;
+    private final IrGestureManager.VoteState mState;
 
-    public IrGestureVote(IrGestureManager irGestureManager) {
+    IrGestureVote(IrGestureManager irGestureManager, IrGestureManager.VoteState state) {
         mIrGestureManager = irGestureManager;
+        mState = state;
+    }
+
+    public synchronized void voteForSensors(int flags) {
+        checkOpen();
+        mIrGestureManager.updateState(mState.mFlags, flags);
+        mState.mFlags = flags;
+    }
+
+    public synchronized void voteForSensorsDeferred(int flags) {
+        checkOpen();
+        mIrGestureManager.updateStateDeferred(mState.mFlags, flags);
+        mState.mFlags = flags;
     }
 
-    public void voteForSensors(int flags) {
-        mIrGestureManager.updateState(mLastFlags, flags);
-        mLastFlags = flags;
+    @Override
+    public synchronized void close() {
+        if (!mState.mClosed) {
+            mIrGestureManager.updateState(mState.mFlags, 0);
+            mState.mFlags = 0;
+            mState.mClosed = true;
+            mIrGestureManager.onVoteClosed(mState);
+        }
     }
 
-    protected void finalize() {
-        voteForSensors(0);
+    private void checkOpen() {
+        if (mState.mClosed) {
+            throw new IllegalStateException("IR gesture vote " + mState.mTag + " is closed");
+        }
     }
 }
@@ -17,11 +17,10 @@
 package com.cyanogenmod.settings.device;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
-import android.preference.PreferenceManager;
+import android.os.SystemClock;
 import android.telephony.PhoneStateListener;
 import android.telecom.TelecomManager;
 import android.telephony.TelephonyManager;
@@ -30,90 +29,89 @@ import android.util.Log;
 import static com.cyanogenmod.settings.device.IrGestureManager.*;
 import static android.telephony.TelephonyManager.*;
 
-public class IrSilencer extends PhoneStateListener implements SensorEventListener {
+public class IrSilencer extends PhoneStateListener implements ArmingReconciler.Feature,
+        SensorEventListener {
     private static final String TAG = "CMActions-IRSilencer";
 
     private static final int IR_GESTURES_FOR_RINGING = (1 << IR_GESTURE_SWIPE);
     private static final int SILENCE_DELAY_MS = 500;
-    private static final String GESTURE_IR_SILENCE_KEY = "gesture_ir_silence";
 
     private TelecomManager mTelecomManager;
-    private SensorHelper mSensorHelper;
     private Sensor mSensor;
-    private IrGestureVote mIrGestureVote;
-    private boolean mIsRinging;
-    private long mRingStartedMs;
+    private ArmingReconciler mReconciler;
+    private SensorEventRecorder mRecorder;
+    private ActionDispatcher.Channel mSilenceAction;
+    private volatile boolean mIsRinging;
+    private volatile long mRingStartedMs;
 
-    private Context mContext;
+    private GesturePreferences mPreferences;
 
-    private boolean mGestureIrSilenceEnabled = true;
-
-    public IrSilencer(Context context, SensorHelper sensorHelper, IrGestureManager irGestureManager) {
+    public IrSilencer(Context context, GesturePreferences preferences,
+                            SensorHelper sensorHelper, ArmingReconciler reconciler,
+                            SensorEventRecorder recorder, ActionDispatcher dispatcher) {
         mTelecomManager = (TelecomManager) context.getSystemService(Context.TELECOM_SERVICE);
         TelephonyManager telephonyManager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
 
-        mContext = context;
-        mSensorHelper = sensorHelper;
+        mPreferences = preferences;
+        mRecorder = recorder;
         mSensor = sensorHelper.getIrGestureSensor();
-        mIrGestureVote = new IrGestureVote(irGestureManager);
-        mIrGestureVote.voteForSensors(0);
+        mReconciler = reconciler;
+        mSilenceAction = dispatcher.createChannel("ir_silence", new SensorAction() {
+            @Override
+            public boolean action() {
+                ActionsLog.d(TAG, "Silencing ringer");
+                mTelecomManager.silenceRinger();
+                return true;
+            }
+        }, ActionDispatcher.LANE_CRITICAL, 500, 2, 1000);
 
         telephonyManager.listen(this, LISTEN_CALL_STATE);
-
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
-        loadPreferences(sharedPrefs);
-        sharedPrefs.registerOnSharedPreferenceChangeListener(mPrefListener);
     }
 
     @Override
-    public synchronized void onSensorChanged(SensorEvent event) {
+    public void onSensorChanged(SensorEvent event) {
+        long callbackNs = SystemClock.elapsedRealtimeNanos();
         int gesture = (int) event.values[1];
 
-        if (gesture == IR_GESTURE_SWIPE && mIsRinging && mGestureIrSilenceEnabled) {
-            Log.d(TAG, "event: [" + event.values.length + "]: " + event.values[0] + ", " +
-                event.values[1] + ", " + event.values[2]);
-            long now = System.currentTimeMillis();
+        if (gesture == IR_GESTURE_SWIPE && mIsRinging &&
+                mPreferences.getSnapshot().isIrSilenceEnabled()) {
+            ActionsLog.d(TAG, "event: %f, %f, %f", event.values[0], event.values[1],
+                event.values[2]);
+            long now = SystemClock.elapsedRealtime();
             if (now - mRingStartedMs >= SILENCE_DELAY_MS) {
-                Log.d(TAG, "Silencing ringer");
-                mTelecomManager.silenceRinger();
+                mSilenceAction.dispatch(GestureLatencyTracker.GESTURE_IR_SILENCE, event.timestamp,
+                    callbackNs);
             } else {
-                Log.d(TAG, "Ignoring silence gesture: " + now + " is too close to " +
-                        mRingStartedMs + ", delay=" + SILENCE_DELAY_MS);
+                ActionsLog.d(TAG, "Ignoring silence gesture: %d is too close to %d, delay=%d",
+                        now, mRingStartedMs, SILENCE_DELAY_MS);
             }
         }
     }
 
     @Override
     public synchronized void onCallStateChanged(int state, String incomingNumber) {
-        if (state == CALL_STATE_RINGING && !mIsRinging && mGestureIrSilenceEnabled) {
+        mRecorder.recordCallState(state);
+        if (state == CALL_STATE_RINGING && !mIsRinging) {
             Log.d(TAG, "Ringing started");
-            mSensorHelper.registerListener(mSensor, this);
-            mIrGestureVote.voteForSensors(IR_GESTURES_FOR_RINGING);
             mIsRinging = true;
-            mRingStartedMs = System.currentTimeMillis();
+            mRingStartedMs = SystemClock.elapsedRealtime();
+            mReconciler.setRinging(true);
         } else if (state != CALL_STATE_RINGING && mIsRinging) {
             Log.d(TAG, "Ringing stopped");
-            mSensorHelper.unregisterListener(this);
-            mIrGestureVote.voteForSensors(0);
             mIsRinging = false;
+            mReconciler.setRinging(false);
         }
     }
 
     @Override
-    public void onAccuracyChanged(Sensor mSensor, int accuracy) {
+    public void addArming(ArmingReconciler.Conditions conditions, ArmingReconciler.Arming arming) {
+        if (mPreferences.getSnapshot().isIrSilenceEnabled() && conditions.isRinging()) {
+            arming.register(mSensor, this);
+            arming.enableIrGestures(IR_GESTURES_FOR_RINGING);
+        }
     }
 
-    private void loadPreferences(SharedPreferences sharedPreferences) {
-        mGestureIrSilenceEnabled = sharedPreferences.getBoolean(GESTURE_IR_SILENCE_KEY, true);
+    @Override
+    public void onAccuracyChanged(Sensor mSensor, int accuracy) {
     }
-
-    private SharedPreferences.OnSharedPreferenceChangeListener mPrefListener =
-            new SharedPreferences.OnSharedPreferenceChangeListener() {
-        @Override
-        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-            if (GESTURE_IR_SILENCE_KEY.equals(key)) {
-                mGestureIrSilenceEnabled = sharedPreferences.getBoolean(GESTURE_IR_SILENCE_KEY, true);
-            } 
-        }
-    };
 }
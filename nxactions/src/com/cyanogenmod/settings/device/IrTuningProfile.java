@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import android.content.SharedPreferences;
+
+import static com.cyanogenmod.settings.device.IrGestureManager.*;
+
+/**
+ * Named IR tunings, expressed as percentages of the factory values of the duty-cycle
+ * related fields of struct stm401_ir_config. Longer noise periods and idle counts
+ * trade detection latency for IR LED power, shorter object valid delays do the opposite.
+ *
+ * The hub keeps whatever tuning it was last given across restarts of the service, so
+ * the factory values are recorded the first time a tuning number is seen and restored
+ * from that record afterwards, rather than re-read from the already tuned hub.
+ */
+public class IrTuningProfile {
+    // Offsets into the packed struct stm401_ir_config, see jni_NXActions.c
+    private static final int OFFSET_TUNING_NUMBER = 1;
+    private static final int OFFSET_IDLE_COUNT = 178;
+    private static final int OFFSET_NOISE_PERIOD = 184;
+    private static final int OFFSET_OBJECT_VALID_DELAY = 185;
+    public static final int CONFIG_SIZE = 212;
+
+    public static final IrTuningProfile DEFAULT =
+        new IrTuningProfile("default", 100, 100, 100);
+    public static final IrTuningProfile LOW_POWER =
+        new IrTuningProfile("low_power", 200, 200, 100);
+    public static final IrTuningProfile FAST_RESPONSE =
+        new IrTuningProfile("fast_response", 100, 50, 50);
+
+    private final String mName;
+    private final int mNoisePeriodPercent;
+    private final int mIdleCountPercent;
+    private final int mObjectValidDelayPercent;
+
+    public IrTuningProfile(String name, int noisePeriodPercent, int idleCountPercent,
+            int objectValidDelayPercent) {
+        mName = name;
+        mNoisePeriodPercent = noisePeriodPercent;
+        mIdleCountPercent = idleCountPercent;
+        mObjectValidDelayPercent = objectValidDelayPercent;
+    }
+
+    // Swipes silence a ringing phone or alarm and need to be caught quickly, approach
+    // alone only pulses the doze screen and can run at a lower duty cycle.
+    public static IrTuningProfile forGestures(int gestures) {
+        if ((gestures & (1 << IR_GESTURE_SWIPE)) != 0) {
+            return FAST_RESPONSE;
+        } else if (gestures != 0) {
+            return LOW_POWER;
+        }
+        return DEFAULT;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public static ByteBuffer copyOf(ByteBuffer config) {
+        ByteBuffer copy = ByteBuffer.allocate(CONFIG_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        copy.put((ByteBuffer) config.duplicate().clear());
+        return copy;
+    }
+
+    public static boolean isSameTuning(ByteBuffer config, ByteBuffer factory) {
+        return config.get(OFFSET_TUNING_NUMBER) == factory.get(OFFSET_TUNING_NUMBER);
+    }
+
+    /**
+     * Makes factory, a copy of the live config, hold the factory values recorded in prefs
+     * for its tuning number. If none were recorded yet, the live values are taken as the
+     * factory ones and recorded instead.
+     */
+    public static void loadFactoryValues(ByteBuffer factory, SharedPreferences prefs) {
+        int tuningNumber = getUint8(factory, OFFSET_TUNING_NUMBER);
+        if (prefs.getInt("tuning_number", -1) == tuningNumber) {
+            putUint8(factory, OFFSET_NOISE_PERIOD, prefs.getInt("noise_period", 0));
+            putUint16(factory, OFFSET_IDLE_COUNT, prefs.getInt("idle_count", 0));
+            putUint8(factory, OFFSET_OBJECT_VALID_DELAY, prefs.getInt("object_valid_delay", 0));
+        } else {
+            prefs.edit()
+                .putInt("tuning_number", tuningNumber)
+                .putInt("noise_period", getUint8(factory, OFFSET_NOISE_PERIOD))
+                .putInt("idle_count", getUint16(factory, OFFSET_IDLE_COUNT))
+                .putInt("object_valid_delay", getUint8(factory, OFFSET_OBJECT_VALID_DELAY))
+                .apply();
+        }
+    }
+
+    public void applyTo(ByteBuffer config, ByteBuffer factory) {
+        putUint8(config, OFFSET_NOISE_PERIOD,
+            scale(getUint8(factory, OFFSET_NOISE_PERIOD), mNoisePeriodPercent, 0xff));
+        putUint16(config, OFFSET_IDLE_COUNT,
+            scale(getUint16(factory, OFFSET_IDLE_COUNT), mIdleCountPercent, 0xffff));
+        putUint8(config, OFFSET_OBJECT_VALID_DELAY,
+            scale(getUint8(factory, OFFSET_OBJECT_VALID_DELAY), mObjectValidDelayPercent, 0xff));
+    }
+
+    private static int scale(int value, int percent, int max) {
+        if (value == 0) {
+            return 0;
+        }
+        return Math.max(1, Math.min(max, value * percent / 100));
+    }
+
+    private static int getUint8(ByteBuffer buffer, int offset) {
+        return buffer.get(offset) & 0xff;
+    }
+
+    private static void putUint8(ByteBuffer buffer, int offset, int value) {
+        buffer.put(offset, (byte) value);
+    }
+
+    private static int getUint16(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset) & 0xffff;
+    }
+
+    private static void putUint16(ByteBuffer buffer, int offset, int value) {
+        buffer.putShort(offset, (short) value);
+    }
+}
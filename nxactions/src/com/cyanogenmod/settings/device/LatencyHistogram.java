@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+public class LatencyHistogram {
+    // Upper bucket bounds in ms, the last bucket collects everything above
+    private static final long[] BUCKET_BOUNDS_MS = {
+        1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000
+    };
+
+    private final long[] mCounts = new long[BUCKET_BOUNDS_MS.length + 1];
+    private long mCount;
+    private long mTotalNs;
+    private long mMaxNs;
+
+    public synchronized void record(long latencyNs) {
+        if (latencyNs < 0) {
+            latencyNs = 0;
+        }
+
+        long latencyMs = latencyNs / 1000000;
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MS.length && latencyMs >= BUCKET_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+
+        mCounts[bucket]++;
+        mCount++;
+        mTotalNs += latencyNs;
+        if (latencyNs > mMaxNs) {
+            mMaxNs = latencyNs;
+        }
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    public synchronized long getMeanNs() {
+        return mCount > 0 ? mTotalNs / mCount : 0;
+    }
+
+    public synchronized long getMaxNs() {
+        return mMaxNs;
+    }
+
+    // Upper bound of the bucket holding the given percentile, in ms, or -1 if it falls
+    // into the open-ended last bucket.
+    public synchronized long getPercentileMs(int percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+
+        long threshold = (mCount * percentile + 99) / 100;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            seen += mCounts[i];
+            if (seen >= threshold) {
+                return BUCKET_BOUNDS_MS[i];
+            }
+        }
+        return -1;
+    }
+
+    // Bucket counts as "<1:n,<2:n,...,>=5000:n"
+    public synchronized String getBuckets() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < mCounts.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            if (i < BUCKET_BOUNDS_MS.length) {
+                sb.append('<').append(BUCKET_BOUNDS_MS[i]);
+            } else {
+                sb.append(">=").append(BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1]);
+            }
+            sb.append(':').append(mCounts[i]);
+        }
+        return sb.toString();
+    }
+}
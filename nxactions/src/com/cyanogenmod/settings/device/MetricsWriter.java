@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.io.PrintWriter;
+
+/**
+ * Writes service metrics for dumpsys, either grouped and indented for reading or, in
+ * compact mode, as one "section.key=value" line per metric for aggregation.
+ */
+public class MetricsWriter {
+    private final PrintWriter mPw;
+    private final boolean mCompact;
+    private String mSection;
+
+    public MetricsWriter(PrintWriter pw, boolean compact) {
+        mPw = pw;
+        mCompact = compact;
+    }
+
+    public boolean isCompact() {
+        return mCompact;
+    }
+
+    public void section(String name) {
+        mSection = name;
+        if (!mCompact) {
+            mPw.println(name + ":");
+        }
+    }
+
+    public void value(String key, long value) {
+        value(key, Long.toString(value));
+    }
+
+    public void value(String key, boolean value) {
+        value(key, value ? "1" : "0");
+    }
+
+    public void value(String key, String value) {
+        if (mCompact) {
+            mPw.println(mSection + "." + key + "=" + value);
+        } else {
+            mPw.println("  " + key + ": " + value);
+        }
+    }
+
+    public void histogram(String key, LatencyHistogram histogram) {
+        value(key + ".count", histogram.getCount());
+        value(key + ".mean_us", histogram.getMeanNs() / 1000);
+        value(key + ".max_us", histogram.getMaxNs() / 1000);
+        value(key + ".p50_ms", histogram.getPercentileMs(50));
+        value(key + ".p90_ms", histogram.getPercentileMs(90));
+        value(key + ".p99_ms", histogram.getPercentileMs(99));
+        value(key + ".buckets", histogram.getBuckets());
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Display;
+
+/**
+ * Delivers display state transitions to the registered ScreenStateNotifiers away from the
+ * main thread. Transitions are handled one at a time, in order, on a dispatcher thread,
+ * and only notifiers whose armed state changes are called, in the order they were added.
+ * Listeners added with addListener() see every display state, in order, once all
+ * notifiers are done.
+ */
+public class ScreenStateDispatcher {
+    private static final String TAG = "CMActions-ScreenDispatcher";
+
+    private static final int NO_STATE = -1;
+
+    private final List<Entry> mNotifiers = new ArrayList<Entry>();
+    private final List<DisplayStateSource.Listener> mListeners =
+            new ArrayList<DisplayStateSource.Listener>();
+
+    private final HandlerThread mDispatchThread;
+    private final Handler mDispatchHandler;
+
+    // Per target display state, time until all notifiers and listeners were done,
+    // measured from the moment the transition was reported
+    private static final String[] STATE_NAMES = { "unknown", "off", "on", "doze", "doze_suspend" };
+    private final LatencyHistogram[] mTransitionLatency = new LatencyHistogram[STATE_NAMES.length];
+
+    // Only written on the dispatcher thread
+    private volatile int mState = NO_STATE;
+    private volatile long mTransitions;
+
+    public ScreenStateDispatcher() {
+        for (int i = 0; i < mTransitionLatency.length; i++) {
+            mTransitionLatency[i] = new LatencyHistogram();
+        }
+
+        mDispatchThread = new HandlerThread("CMActions-Screen", Process.THREAD_PRIORITY_DISPLAY);
+        mDispatchThread.start();
+        mDispatchHandler = new Handler(mDispatchThread.getLooper());
+    }
+
+    /**
+     * Adds notifier after the ones already added. A notifier added after the first
+     * transition is brought to the current display state right away.
+     */
+    public void add(ScreenStateNotifier notifier) {
+        final Entry entry = new Entry(notifier);
+        synchronized (this) {
+            mNotifiers.add(entry);
+        }
+
+        mDispatchHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                int state = mState;
+                if (state != NO_STATE && entry.update(state)) {
+                    entry.run();
+                }
+            }
+        });
+    }
+
+    public synchronized void addListener(DisplayStateSource.Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public Handler getHandler() {
+        return mDispatchHandler;
+    }
+
+    public void displayStateChanged(final int state) {
+        final long startNs = SystemClock.elapsedRealtimeNanos();
+        mDispatchHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                runTransition(state, startNs);
+            }
+        });
+    }
+
+    private void runTransition(int state, long startNs) {
+        List<Entry> notifiers;
+        List<DisplayStateSource.Listener> listeners;
+        synchronized (this) {
+            notifiers = new ArrayList<Entry>(mNotifiers);
+            listeners = new ArrayList<DisplayStateSource.Listener>(mListeners);
+        }
+
+        ActionsLog.flush();
+        mState = state;
+
+        int changed = 0;
+        for (Entry entry : notifiers) {
+            if (entry.update(state)) {
+                entry.run();
+                changed++;
+            }
+        }
+
+        for (DisplayStateSource.Listener listener : listeners) {
+            listener.displayStateChanged(state);
+        }
+
+        long latencyNs = SystemClock.elapsedRealtimeNanos() - startNs;
+        mTransitionLatency[stateIndex(state)].record(latencyNs);
+        mTransitions++;
+        Log.d(TAG, "Display " + STATE_NAMES[stateIndex(state)] + " handled in " +
+            (latencyNs / 1000) + "us, " + changed + " notifiers changed");
+    }
+
+    private static int stateIndex(int state) {
+        return state >= 0 && state < STATE_NAMES.length ? state : Display.STATE_UNKNOWN;
+    }
+
+    public void dump(MetricsWriter writer) {
+        List<Entry> entries;
+        synchronized (this) {
+            entries = new ArrayList<Entry>(mNotifiers);
+        }
+
+        writer.section("screen");
+        writer.value("transitions", mTransitions);
+        for (int state = 0; state < STATE_NAMES.length; state++) {
+            if (mTransitionLatency[state].getCount() > 0) {
+                writer.histogram("to_" + STATE_NAMES[state], mTransitionLatency[state]);
+            }
+        }
+        for (Entry entry : entries) {
+            writer.value(entry.mName + ".armed", entry.mArmed);
+        }
+    }
+
+    private static class Entry {
+        final ScreenStateNotifier mNotifier;
+        final String mName;
+        final int mArmedStates;
+
+        // Only changed on the dispatcher thread
+        volatile boolean mArmed;
+        private boolean mInitialized;
+
+        Entry(ScreenStateNotifier notifier) {
+            mNotifier = notifier;
+            mName = notifier.getClass().getSimpleName();
+            mArmedStates = notifier.getArmedDisplayStates();
+        }
+
+        // Returns whether the notifier has to be called for the new display state
+        boolean update(int state) {
+            boolean armed = (mArmedStates & (1 << state)) != 0;
+            if (mInitialized && armed == mArmed) {
+                return false;
+            }
+            mInitialized = true;
+            mArmed = armed;
+            return true;
+        }
+
+        void run() {
+            boolean armed = mArmed;
+            try {
+                if (armed) {
+                    mNotifier.screenTurnedOff();
+                } else {
+                    mNotifier.screenTurnedOn();
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, mName + " failed to " + (armed ? "arm" : "disarm"), e);
+            }
+        }
+    }
+}
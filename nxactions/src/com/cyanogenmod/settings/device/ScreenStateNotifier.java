@@ -16,7 +16,21 @@
 
 package com.cyanogenmod.settings.device;
 
+import android.view.Display;
+
 interface ScreenStateNotifier {
+    // Sets of Display.STATE_* values for getArmedDisplayStates()
+    public static final int DISPLAY_OFF = 1 << Display.STATE_OFF;
+    public static final int DISPLAY_ON = 1 << Display.STATE_ON;
+    public static final int DISPLAY_DOZE = 1 << Display.STATE_DOZE;
+    public static final int DISPLAY_DOZE_SUSPEND = 1 << Display.STATE_DOZE_SUSPEND;
+    public static final int DISPLAY_NOT_ON = DISPLAY_OFF | DISPLAY_DOZE | DISPLAY_DOZE_SUSPEND;
+
     public void screenTurnedOn();
     public void screenTurnedOff();
+
+    // Display states in which this notifier wants to be armed. Entering one of them
+    // from outside the set calls screenTurnedOff(), leaving the set calls screenTurnedOn()
+    // and moving within or outside of it calls neither.
+    public int getArmedDisplayStates();
 }
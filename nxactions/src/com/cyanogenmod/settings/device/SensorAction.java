@@ -17,5 +17,6 @@
 package com.cyanogenmod.settings.device;
 
 interface SensorAction {
-    public void action();
+    // Returns false if the action's own gating kept it from running
+    public boolean action();
 }
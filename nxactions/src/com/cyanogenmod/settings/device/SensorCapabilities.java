@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.List;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+import android.os.AsyncTask;
+import android.util.Log;
+
+/**
+ * The MMI sensors, resolved once when the service starts. The lookup is an in-memory
+ * call into SensorManager's own list, so nothing is persisted; only the sensors.txt
+ * diagnostic dump touches storage, and it is written off the calling thread.
+ */
+public class SensorCapabilities {
+    private static final String TAG = "CMActions-SensorCapabilities";
+
+    private static final int SENSOR_TYPE_MMI_FIRST = 65537;
+    private static final int SENSOR_TYPE_MMI_LAST = 65546;
+
+    private final Context mContext;
+    private final SensorManager mSensorManager;
+
+    private final Sensor[] mSensors = new Sensor[SENSOR_TYPE_MMI_LAST - SENSOR_TYPE_MMI_FIRST + 1];
+
+    public SensorCapabilities(Context context, SensorManager sensorManager) {
+        mContext = context;
+        mSensorManager = sensorManager;
+
+        for (int i = 0; i < mSensors.length; i++) {
+            mSensors[i] = mSensorManager.getDefaultSensor(SENSOR_TYPE_MMI_FIRST + i, true);
+        }
+
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                dumpSensorsList();
+            }
+        });
+    }
+
+    public Sensor getSensor(int type) {
+        if (type < SENSOR_TYPE_MMI_FIRST || type > SENSOR_TYPE_MMI_LAST) {
+            return null;
+        }
+        return mSensors[type - SENSOR_TYPE_MMI_FIRST];
+    }
+
+    private void dumpSensorsList() {
+        try {
+            FileOutputStream out = mContext.openFileOutput("sensors.txt",
+                Context.MODE_WORLD_READABLE);
+            OutputStreamWriter writer = new OutputStreamWriter(out);
+
+            List<Sensor> sensorList = mSensorManager.getSensorList(Sensor.TYPE_ALL);
+            for (Sensor sensor : sensorList) {
+                writer.write("sensor " + sensor.getType() + " = " + sensor.getName()
+                    + " max batch: " + sensor.getFifoMaxEventCount()
+                    + " isWakeUp: " + sensor.isWakeUpSensor() + "\n");
+            }
+            writer.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write sensors list", e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.content.Context;
+import android.hardware.SensorEvent;
+import android.os.SystemClock;
+import android.os.SystemProperties;
+import android.util.Log;
+
+/**
+ * Opt-in ring buffer of sensor events and state transitions, kept in a memory-mapped
+ * file so it survives a crash of the service. Enable with
+ * "setprop persist.cmactions.trace 1" and pull files/sensor_trace.bin.
+ *
+ * Layout (little endian): a HEADER_SIZE byte header holding magic, version, record
+ * size, capacity and the total number of records written, followed by capacity
+ * fixed-size records of kind, value count, type/state, timestamp (ns) and up to
+ * MAX_VALUES floats. Record n lives in slot n % capacity.
+ */
+public class SensorEventRecorder {
+    private static final String TAG = "CMActions-Recorder";
+
+    private static final String TRACE_PROPERTY = "persist.cmactions.trace";
+    private static final String TRACE_FILE = "sensor_trace.bin";
+
+    public static final int KIND_SENSOR = 1;
+    public static final int KIND_DISPLAY = 2;
+    public static final int KIND_CALL = 3;
+    public static final int KIND_ALARM = 4;
+
+    public static final int ALARM_ALERT = 1;
+    public static final int ALARM_SNOOZE = 2;
+    public static final int ALARM_DISMISS = 3;
+    public static final int ALARM_DONE = 4;
+
+    private static final int MAGIC = 0x5254584e; // "NXTR"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 32;
+    private static final int MAX_VALUES = 4;
+    private static final int CAPACITY = 4096;
+
+    private static final int HEADER_COUNT_OFFSET = 16;
+
+    private final MappedByteBuffer mBuffer;
+    private long mCount;
+
+    public SensorEventRecorder(Context context) {
+        mBuffer = SystemProperties.getBoolean(TRACE_PROPERTY, false) ? map(context) : null;
+        // Carry on after the records of the previous run, which may have crashed
+        mCount = mBuffer != null ? mBuffer.getLong(HEADER_COUNT_OFFSET) : 0;
+    }
+
+    public boolean isEnabled() {
+        return mBuffer != null;
+    }
+
+    public void recordSensorEvent(SensorEvent event) {
+        if (mBuffer == null) {
+            return;
+        }
+        synchronized (this) {
+            int offset = nextRecord();
+            float[] values = event.values;
+            int count = Math.min(values.length, MAX_VALUES);
+            mBuffer.put(offset, (byte) KIND_SENSOR);
+            mBuffer.put(offset + 1, (byte) count);
+            mBuffer.putInt(offset + 4, event.sensor.getType());
+            mBuffer.putLong(offset + 8, event.timestamp);
+            for (int i = 0; i < MAX_VALUES; i++) {
+                mBuffer.putFloat(offset + 16 + 4 * i, i < count ? values[i] : 0f);
+            }
+            commit();
+        }
+    }
+
+    // state is one of Display.STATE_*
+    public void recordDisplayState(int state) {
+        recordTransition(KIND_DISPLAY, state);
+    }
+
+    public void recordCallState(int state) {
+        recordTransition(KIND_CALL, state);
+    }
+
+    public void recordAlarmState(int state) {
+        recordTransition(KIND_ALARM, state);
+    }
+
+    private void recordTransition(int kind, int state) {
+        if (mBuffer == null) {
+            return;
+        }
+        synchronized (this) {
+            int offset = nextRecord();
+            mBuffer.put(offset, (byte) kind);
+            mBuffer.put(offset + 1, (byte) 0);
+            mBuffer.putInt(offset + 4, state);
+            mBuffer.putLong(offset + 8, SystemClock.elapsedRealtimeNanos());
+            for (int i = 0; i < MAX_VALUES; i++) {
+                mBuffer.putFloat(offset + 16 + 4 * i, 0f);
+            }
+            commit();
+        }
+    }
+
+    private int nextRecord() {
+        return HEADER_SIZE + (int) (mCount % CAPACITY) * RECORD_SIZE;
+    }
+
+    private void commit() {
+        mCount++;
+        mBuffer.putLong(HEADER_COUNT_OFFSET, mCount);
+    }
+
+    private static MappedByteBuffer map(Context context) {
+        File file = new File(context.getFilesDir(), TRACE_FILE);
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE + (long) CAPACITY * RECORD_SIZE);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            // The count only ever grows, a negative one means the file is corrupt and the
+            // ring starts over rather than handing out offsets outside of it
+            if (buffer.getInt(0) == MAGIC && buffer.getShort(4) == VERSION &&
+                    buffer.getShort(6) == RECORD_SIZE && buffer.getInt(8) == CAPACITY &&
+                    buffer.getLong(HEADER_COUNT_OFFSET) >= 0) {
+                Log.i(TAG, "Appending sensor events to " + file + " after " +
+                    buffer.getLong(HEADER_COUNT_OFFSET) + " records");
+            } else {
+                buffer.putInt(0, MAGIC);
+                buffer.putShort(4, (short) VERSION);
+                buffer.putShort(6, (short) RECORD_SIZE);
+                buffer.putInt(8, CAPACITY);
+                buffer.putLong(HEADER_COUNT_OFFSET, 0);
+                Log.i(TAG, "Recording sensor events to " + file);
+            }
+            return buffer;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to map " + file, e);
+            return null;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+}
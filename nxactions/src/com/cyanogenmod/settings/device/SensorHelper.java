@@ -16,20 +16,30 @@
 
 package com.cyanogenmod.settings.device;
 
-import java.util.List;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.util.HashMap;
+import java.util.Map;
 
 import android.content.Context;
 import android.hardware.Sensor;
+import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.PowerManager;
+import android.os.Process;
 import android.util.Log;
+import android.util.SparseArray;
 
-public class SensorHelper {
+public class SensorHelper implements ScreenStateNotifier {
     private static final String TAG = "CMActions";
 
+    public interface RegistrationListener {
+        // Called with the helper lock held when sensor could not be re-registered and
+        // lost its subscribers, they have to subscribe again
+        void onRegistrationLost(Sensor sensor);
+    }
+
     private static final int SENSOR_TYPE_MMI_CAMERA_ACTIVATION = 65540;
     private static final int SENSOR_TYPE_MMI_CHOP_CHOP = 65546;
     private static final int SENSOR_TYPE_MMI_FLAT_UP = 65537;
@@ -37,62 +47,285 @@ public class SensorHelper {
     private static final int SENSOR_TYPE_MMI_IR_OBJECT = 65543;
     private static final int SENSOR_TYPE_MMI_STOW = 65539;
 
-    private static final int BATCH_LATENCY_IN_MS = 100;
+    private static final BatchingProfile DEFAULT_PROFILE = BatchingProfile.batched(100);
 
     private Context mContext;
     private SensorManager mSensorManager;
+    private SensorCapabilities mSensorCapabilities;
+    private SensorEventRecorder mRecorder;
+
+    private final HandlerThread mSensorThread;
+    private final Handler mSensorHandler;
+
+    // Guarded by this. Arming runs on the screen dispatcher thread, so the lock is only
+    // contended by dump() and the odd preference change.
+    private final Map<Sensor, Registration> mRegistrations = new HashMap<Sensor, Registration>();
+
+    private final SparseArray<BatchingProfile> mScreenOnProfiles =
+            new SparseArray<BatchingProfile>();
+    private final SparseArray<BatchingProfile> mScreenOffProfiles =
+            new SparseArray<BatchingProfile>();
+    private boolean mScreenOn;
+    private RegistrationListener mRegistrationListener;
 
-    public SensorHelper(Context context) {
+    private long mRegisterCount;
+    private long mUnregisterCount;
+
+    public SensorHelper(Context context, SensorEventRecorder recorder) {
         mContext = context;
+        mRecorder = recorder;
         mSensorManager = (SensorManager) mContext .getSystemService(Context.SENSOR_SERVICE);
-        dumpSensorsList();
+        mSensorCapabilities = new SensorCapabilities(context, mSensorManager);
+
+        mSensorThread = new HandlerThread("CMActions-Sensors", Process.THREAD_PRIORITY_DISPLAY);
+        mSensorThread.start();
+        mSensorHandler = new Handler(mSensorThread.getLooper());
+
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        mScreenOn = powerManager.isInteractive();
+
+        // Gestures that launch something are delivered immediately, pick-up related
+        // sensors only gate a doze pulse and can batch longer while the screen is off
+        setBatchingProfile(SENSOR_TYPE_MMI_CAMERA_ACTIVATION, BatchingProfile.FASTEST,
+                BatchingProfile.FASTEST);
+        setBatchingProfile(SENSOR_TYPE_MMI_CHOP_CHOP, BatchingProfile.FASTEST,
+                BatchingProfile.FASTEST);
+        setBatchingProfile(SENSOR_TYPE_MMI_IR_GESTURE, BatchingProfile.NORMAL,
+                BatchingProfile.NORMAL);
+        setBatchingProfile(SENSOR_TYPE_MMI_FLAT_UP, DEFAULT_PROFILE, BatchingProfile.batched(300));
+        setBatchingProfile(SENSOR_TYPE_MMI_STOW, DEFAULT_PROFILE, BatchingProfile.batched(1000));
     }
 
-    private void dumpSensorsList() {
-        try {
-            FileOutputStream out = mContext.openFileOutput("sensors.txt",
-                Context.MODE_WORLD_READABLE);
-            OutputStreamWriter writer = new OutputStreamWriter(out);
-
-            List<Sensor> sensorList = mSensorManager.getSensorList(Sensor.TYPE_ALL);
-            for (Sensor sensor : sensorList) {
-                writer.write("sensor " + sensor.getType() + " = " + sensor.getName()
-                    + " max batch: " + sensor.getFifoMaxEventCount() + " isWakeUp: " + sensor.isWakeUpSensor() + "\n");
-            }
-            writer.close();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    public Handler getSensorHandler() {
+        return mSensorHandler;
+    }
+
+    public synchronized void setRegistrationListener(RegistrationListener listener) {
+        mRegistrationListener = listener;
     }
 
     public Sensor getCameraActivationSensor() {
-        return mSensorManager.getDefaultSensor(SENSOR_TYPE_MMI_CAMERA_ACTIVATION, true);
+        return mSensorCapabilities.getSensor(SENSOR_TYPE_MMI_CAMERA_ACTIVATION);
     }
 
     public Sensor getChopChopSensor() {
-        return mSensorManager.getDefaultSensor(SENSOR_TYPE_MMI_CHOP_CHOP, true);
+        return mSensorCapabilities.getSensor(SENSOR_TYPE_MMI_CHOP_CHOP);
     }
 
     public Sensor getFlatUpSensor() {
-        return mSensorManager.getDefaultSensor(SENSOR_TYPE_MMI_FLAT_UP, true);
+        return mSensorCapabilities.getSensor(SENSOR_TYPE_MMI_FLAT_UP);
     }
 
     public Sensor getIrGestureSensor() {
-        return mSensorManager.getDefaultSensor(SENSOR_TYPE_MMI_IR_GESTURE, true);
+        return mSensorCapabilities.getSensor(SENSOR_TYPE_MMI_IR_GESTURE);
     }
 
     public Sensor getStowSensor() {
-        return mSensorManager.getDefaultSensor(SENSOR_TYPE_MMI_STOW, true);
+        return mSensorCapabilities.getSensor(SENSOR_TYPE_MMI_STOW);
+    }
+
+    public synchronized void setBatchingProfile(int sensorType, BatchingProfile screenOn,
+            BatchingProfile screenOff) {
+        mScreenOnProfiles.put(sensorType, screenOn);
+        mScreenOffProfiles.put(sensorType, screenOff);
+
+        for (Registration registration : mRegistrations.values()) {
+            if (registration.mSensor.getType() == sensorType) {
+                updateRegistration(registration);
+            }
+        }
     }
 
-    public void registerListener(Sensor sensor, SensorEventListener listener) {
-        if (!mSensorManager.registerListener(listener, sensor,
-            SensorManager.SENSOR_DELAY_NORMAL, BATCH_LATENCY_IN_MS * 1000)) {
+    public synchronized BatchingProfile getBatchingProfile(Sensor sensor) {
+        SparseArray<BatchingProfile> profiles = mScreenOn ? mScreenOnProfiles : mScreenOffProfiles;
+        BatchingProfile profile = profiles.get(sensor.getType());
+        return profile != null ? profile : DEFAULT_PROFILE;
+    }
+
+    @Override
+    public int getArmedDisplayStates() {
+        return DISPLAY_NOT_ON;
+    }
+
+    @Override
+    public synchronized void screenTurnedOn() {
+        mScreenOn = true;
+        updateRegistrations();
+    }
+
+    @Override
+    public synchronized void screenTurnedOff() {
+        mScreenOn = false;
+        updateRegistrations();
+    }
+
+    private void updateRegistrations() {
+        for (Registration registration : mRegistrations.values()) {
+            updateRegistration(registration);
+        }
+    }
+
+    // A failed rebatch drops the sensor's subscribers and reports them lost, subscribing
+    // again retries the registration
+    private void updateRegistration(Registration registration) {
+        if (registration.size() == 0) {
+            return;
+        }
+
+        BatchingProfile profile = getBatchingProfile(registration.mSensor);
+        if (!profile.equals(registration.mProfile)) {
+            Log.d(TAG, "Rebatching sensor " + registration.mSensor.getType() + ": " + profile);
+            mSensorManager.unregisterListener(registration, registration.mSensor);
+            mUnregisterCount++;
+            registration.mProfile = null;
+            try {
+                registerSensor(registration, profile);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to rebatch sensor " + registration.mSensor.getType(), e);
+                registration.clear();
+                if (mRegistrationListener != null) {
+                    mRegistrationListener.onRegistrationLost(registration.mSensor);
+                }
+            }
+        }
+    }
+
+    private void registerSensor(Registration registration, BatchingProfile profile) {
+        Sensor sensor = registration.mSensor;
+        mRegisterCount++;
+        if (!mSensorManager.registerListener(registration, sensor,
+            profile.getSamplingPeriodUs(), profile.getMaxReportLatencyUs(sensor), mSensorHandler)) {
+            registration.mProfile = null;
             throw new RuntimeException("Failed to registerListener for sensor " + sensor);
         }
+        registration.mProfile = profile;
+    }
+
+    /**
+     * Subscribes listener to sensor. Events are delivered on the dedicated sensor thread
+     * (see getSensorHandler()), never on the main thread, so listeners must not block and
+     * must guard any state they share with broadcast receivers or preference listeners.
+     */
+    public synchronized void registerListener(Sensor sensor, SensorEventListener listener) {
+        if (sensor == null) {
+            throw new RuntimeException("Failed to registerListener for missing sensor");
+        }
+
+        Registration registration = mRegistrations.get(sensor);
+        if (registration == null) {
+            registration = new Registration(sensor, mRecorder);
+            mRegistrations.put(sensor, registration);
+        }
+
+        // Also retries a sensor whose last registration failed
+        if (!registration.add(listener) || registration.mProfile != null) {
+            return;
+        }
+
+        try {
+            registerSensor(registration, getBatchingProfile(sensor));
+        } catch (RuntimeException e) {
+            registration.remove(listener);
+            throw e;
+        }
     }
 
-    public void unregisterListener(SensorEventListener listener) {
-        mSensorManager.unregisterListener(listener);
+    public synchronized void unregisterListener(Sensor sensor, SensorEventListener listener) {
+        Registration registration = mRegistrations.get(sensor);
+        if (registration == null || !registration.remove(listener)) {
+            return;
+        }
+
+        if (registration.size() == 0) {
+            mSensorManager.unregisterListener(registration, sensor);
+            mUnregisterCount++;
+            registration.mProfile = null;
+        }
+    }
+
+    public synchronized void dump(MetricsWriter writer) {
+        writer.section("sensors");
+        writer.value("registrations", mRegisterCount);
+        writer.value("unregistrations", mUnregisterCount);
+        for (Registration registration : mRegistrations.values()) {
+            String key = Integer.toString(registration.mSensor.getType());
+            writer.value(key + ".subscribers", registration.size());
+            writer.value(key + ".registered", registration.mProfile != null);
+            writer.value(key + ".events", registration.mEvents);
+        }
+    }
+
+    // One physical registration per sensor, fanning events out to every subscriber.
+    // The subscriber array is replaced on change so dispatch never takes a lock.
+    private static class Registration implements SensorEventListener {
+        final Sensor mSensor;
+        final SensorEventRecorder mRecorder;
+
+        // Guarded by the helper
+        BatchingProfile mProfile;
+
+        // Only written on the sensor thread
+        volatile long mEvents;
+
+        private volatile SensorEventListener[] mListeners = new SensorEventListener[0];
+
+        Registration(Sensor sensor, SensorEventRecorder recorder) {
+            mSensor = sensor;
+            mRecorder = recorder;
+        }
+
+        boolean add(SensorEventListener listener) {
+            SensorEventListener[] listeners = mListeners;
+            for (SensorEventListener l : listeners) {
+                if (l == listener) {
+                    return false;
+                }
+            }
+
+            SensorEventListener[] newListeners = new SensorEventListener[listeners.length + 1];
+            System.arraycopy(listeners, 0, newListeners, 0, listeners.length);
+            newListeners[listeners.length] = listener;
+            mListeners = newListeners;
+            return true;
+        }
+
+        boolean remove(SensorEventListener listener) {
+            SensorEventListener[] listeners = mListeners;
+            for (int i = 0; i < listeners.length; i++) {
+                if (listeners[i] == listener) {
+                    SensorEventListener[] newListeners =
+                            new SensorEventListener[listeners.length - 1];
+                    System.arraycopy(listeners, 0, newListeners, 0, i);
+                    System.arraycopy(listeners, i + 1, newListeners, i, listeners.length - i - 1);
+                    mListeners = newListeners;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void clear() {
+            mListeners = new SensorEventListener[0];
+        }
+
+        int size() {
+            return mListeners.length;
+        }
+
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            mEvents++;
+            mRecorder.recordSensorEvent(event);
+            for (SensorEventListener listener : mListeners) {
+                listener.onSensorChanged(event);
+            }
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+            for (SensorEventListener listener : mListeners) {
+                listener.onAccuracyChanged(sensor, accuracy);
+            }
+        }
     }
 }
@@ -16,6 +16,9 @@
 
 package com.cyanogenmod.settings.device;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
 import android.content.Intent;
 import android.os.Binder;
 import android.os.Bundle;
@@ -53,6 +56,28 @@ public class ServiceWrapper extends android.app.Service {
         return null;
     }
 
+    // dumpsys activity service com.cyanogenmod.settings.device/.ServiceWrapper [--compact]
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        boolean compact = false;
+        for (String arg : args) {
+            if ("--compact".equals(arg)) {
+                compact = true;
+            }
+        }
+
+        if (mCmActionsService == null) {
+            pw.println("Not started");
+            return;
+        }
+
+        mCmActionsService.dump(new MetricsWriter(pw, compact));
+        if (!compact && ActionsLog.DEBUG) {
+            pw.println("debug log:");
+            ActionsLog.dump(pw);
+        }
+    }
+
     public void setCallback(ServiceCallback callback) {
     }
 
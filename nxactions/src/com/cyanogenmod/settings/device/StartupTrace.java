@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.os.SystemClock;
+
+/**
+ * Where the time between boot and the gestures being armed went: when the service
+ * started, how long each component took to construct and when the first display state
+ * had been fully handled.
+ */
+public class StartupTrace {
+    private final long mServiceStartMs = SystemClock.elapsedRealtime();
+    private volatile long mArmedMs;
+
+    private final List<String> mComponents = new ArrayList<String>();
+    private final List<Long> mDurationsNs = new ArrayList<Long>();
+
+    public long begin() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    public synchronized void end(String component, long beginNs) {
+        mComponents.add(component);
+        mDurationsNs.add(SystemClock.elapsedRealtimeNanos() - beginNs);
+    }
+
+    public void armed() {
+        if (mArmedMs == 0) {
+            mArmedMs = SystemClock.elapsedRealtime();
+        }
+    }
+
+    public synchronized void dump(MetricsWriter writer) {
+        writer.section("startup");
+        writer.value("service_start_ms", mServiceStartMs);
+        long armedMs = mArmedMs;
+        if (armedMs != 0) {
+            writer.value("armed_ms", armedMs);
+            writer.value("start_to_armed_ms", armedMs - mServiceStartMs);
+        }
+        for (int i = 0; i < mComponents.size(); i++) {
+            writer.value(mComponents.get(i) + "_us", mDurationsNs.get(i) / 1000);
+        }
+    }
+}
@@ -16,65 +16,50 @@
 
 package com.cyanogenmod.settings.device;
 
-import android.content.Context;
-import android.content.SharedPreferences;
-import android.preference.PreferenceManager;
+import android.os.SystemClock;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
-import android.util.Log;
 
-public class StowSensor implements ScreenStateNotifier, SensorEventListener {
+public class StowSensor implements ArmingReconciler.Feature, SensorEventListener {
     private static final String TAG = "CMActions-StowSensor";
 
-    private static final String PICK_UP_KEY = "pick_up";
-
-    private SensorHelper mSensorHelper;
-    private SensorAction mSensorAction;
+    private GesturePreferences mPreferences;
+    private ActionDispatcher.Channel mAction;
+    private ActionDispatcher.Channel mPrewarm;
 
     private Sensor mSensor;
 
     private boolean mLastStowed;
 
-    private Context mContext;
-
-    private boolean mPickUpEnabled = true;
-
-    public StowSensor(Context context, SensorHelper sensorHelper, SensorAction action) {
-        mContext = context;
-        mSensorHelper = sensorHelper;
-        mSensorAction = action;
+    public StowSensor(GesturePreferences preferences,
+            SensorHelper sensorHelper, ActionDispatcher.Channel action,
+            ActionDispatcher.Channel prewarm) {
+        mPreferences = preferences;
+        mAction = action;
+        mPrewarm = prewarm;
 
         mSensor = sensorHelper.getStowSensor();
-
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
-        loadPreferences(sharedPrefs);
-        sharedPrefs.registerOnSharedPreferenceChangeListener(mPrefListener);
     }
 
     @Override
-    public void screenTurnedOn() {
-        Log.d(TAG, "Disabling");
-        mSensorHelper.unregisterListener(this);
-    }
-
-    @Override
-    public void screenTurnedOff() {
-        if (mPickUpEnabled) {
-            Log.d(TAG, "Enabling");
-            mSensorHelper.registerListener(mSensor, this);
-        } else {
-            Log.d(TAG, "Disabling");
-            mSensorHelper.unregisterListener(this);
+    public void addArming(ArmingReconciler.Conditions conditions, ArmingReconciler.Arming arming) {
+        // Stays armed through doze pulses, see FlatUpSensor
+        if (mPreferences.getSnapshot().isPickUpEnabled() &&
+                conditions.isDisplayIn(ScreenStateNotifier.DISPLAY_NOT_ON)) {
+            arming.register(mSensor, this);
         }
     }
 
     @Override
     public void onSensorChanged(SensorEvent event) {
+        long callbackNs = SystemClock.elapsedRealtimeNanos();
         boolean thisStowed = (event.values[0] != 0);
-        Log.d(TAG, "event: " + thisStowed);
-        if (mLastStowed && !thisStowed && mPickUpEnabled) {
-            mSensorAction.action();
+        ActionsLog.d(TAG, "event: %b", thisStowed);
+        if (mLastStowed && !thisStowed && mPreferences.getSnapshot().isPickUpEnabled()) {
+            mAction.dispatch(GestureLatencyTracker.GESTURE_STOW, event.timestamp, callbackNs);
+            mPrewarm.dispatch(GestureLatencyTracker.GESTURE_CAMERA_PREWARM, event.timestamp,
+                    callbackNs);
         }
         mLastStowed = thisStowed;
     }
@@ -82,18 +67,4 @@ public class StowSensor implements ScreenStateNotifier, SensorEventListener {
     @Override
     public void onAccuracyChanged(Sensor sensor, int accuracy) {
     }
-
-    private void loadPreferences(SharedPreferences sharedPreferences) {
-        mPickUpEnabled = sharedPreferences.getBoolean(PICK_UP_KEY, true);
-    }
-
-    private SharedPreferences.OnSharedPreferenceChangeListener mPrefListener =
-            new SharedPreferences.OnSharedPreferenceChangeListener() {
-        @Override
-        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-            if (PICK_UP_KEY.equals(key)) {
-                mPickUpEnabled = sharedPreferences.getBoolean(PICK_UP_KEY, true);
-            } 
-        }
-    };
 }
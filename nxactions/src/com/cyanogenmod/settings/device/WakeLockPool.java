@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2015 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.settings.device;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.Context;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Wake locks held by the gesture actions, created once per feature and tagged with it
+ * so battery stats attribute them. Every acquire is timed and clamped to the feature's
+ * upper bound, so a path that never releases cannot keep the device awake. Acquire
+ * counts and hold times are kept per feature for dumpsys.
+ */
+public class WakeLockPool {
+    private static final String TAG = "CMActions-WakeLockPool";
+
+    private final PowerManager mPowerManager;
+    private final List<FeatureLock> mLocks = new ArrayList<FeatureLock>();
+
+    public WakeLockPool(Context context) {
+        mPowerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    /**
+     * Creates the wake lock for feature. levelAndFlags are the PowerManager wake lock
+     * flags, maxHoldMs the longest it may be held by any single acquire.
+     */
+    public synchronized FeatureLock create(String feature, int levelAndFlags, long maxHoldMs) {
+        PowerManager.WakeLock wakeLock = mPowerManager.newWakeLock(levelAndFlags,
+                "CMActions:" + feature);
+        // Holds are tracked here, a timed acquire while held just moves the timeout
+        wakeLock.setReferenceCounted(false);
+        FeatureLock lock = new FeatureLock(feature, wakeLock, maxHoldMs);
+        mLocks.add(lock);
+        return lock;
+    }
+
+    public synchronized void dump(MetricsWriter writer) {
+        writer.section("wake_locks");
+        for (FeatureLock lock : mLocks) {
+            lock.dump(writer);
+        }
+    }
+
+    public static class FeatureLock {
+        private final String mFeature;
+        private final PowerManager.WakeLock mWakeLock;
+        private final long mMaxHoldMs;
+
+        // Guarded by this. The current hold runs from mHeldSinceMs until the release or
+        // the timeout at mHeldUntilMs, whichever comes first.
+        private long mHeldSinceMs;
+        private long mHeldUntilMs;
+        private long mTotalHeldMs;
+        private long mLongestHoldMs;
+        private long mAcquires;
+        private long mClamped;
+
+        FeatureLock(String feature, PowerManager.WakeLock wakeLock, long maxHoldMs) {
+            mFeature = feature;
+            mWakeLock = wakeLock;
+            mMaxHoldMs = maxHoldMs;
+        }
+
+        /**
+         * Acquires the lock until released, but for at most timeoutMs, itself bounded by
+         * the feature's upper bound. Acquiring while held extends the current hold.
+         */
+        public synchronized void acquire(long timeoutMs) {
+            if (timeoutMs > mMaxHoldMs) {
+                Log.w(TAG, mFeature + " asked for " + timeoutMs + "ms, clamping to " +
+                    mMaxHoldMs + "ms");
+                timeoutMs = mMaxHoldMs;
+                mClamped++;
+            }
+
+            long now = SystemClock.elapsedRealtime();
+            if (now >= mHeldUntilMs) {
+                endHold(mHeldUntilMs);
+                mHeldSinceMs = now;
+            }
+            mHeldUntilMs = now + timeoutMs;
+            mAcquires++;
+            mWakeLock.acquire(timeoutMs);
+        }
+
+        public synchronized void release() {
+            long now = SystemClock.elapsedRealtime();
+            if (now < mHeldUntilMs) {
+                mHeldUntilMs = now;
+                mWakeLock.release();
+            }
+        }
+
+        private void endHold(long endMs) {
+            long heldMs = endMs - mHeldSinceMs;
+            if (heldMs > 0) {
+                mTotalHeldMs += heldMs;
+                mLongestHoldMs = Math.max(mLongestHoldMs, heldMs);
+            }
+            mHeldSinceMs = endMs;
+        }
+
+        synchronized void dump(MetricsWriter writer) {
+            long now = SystemClock.elapsedRealtime();
+            boolean held = now < mHeldUntilMs;
+            long runningMs = 0;
+            if (held) {
+                runningMs = now - mHeldSinceMs;
+            } else {
+                endHold(mHeldUntilMs);
+            }
+
+            writer.value(mFeature + ".held", held);
+            writer.value(mFeature + ".acquires", mAcquires);
+            writer.value(mFeature + ".held_ms", mTotalHeldMs + runningMs);
+            writer.value(mFeature + ".longest_hold_ms", Math.max(mLongestHoldMs, runningMs));
+            writer.value(mFeature + ".max_hold_ms", mMaxHoldMs);
+            writer.value(mFeature + ".clamped", mClamped);
+        }
+    }
+}